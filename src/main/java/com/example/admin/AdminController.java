@@ -0,0 +1,95 @@
+package com.example.admin;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/*
+ * Bulk data endpoints, only registered with app.admin.enabled=true:
+ *   GET  /admin/export  -> binary dump of all accounts and messages (see BulkTransferService for the format)
+ *   POST /admin/import  <- such a dump, replacing the current data; answers with the row counts
+ *   POST /admin/generate?accounts=N&messages=M[&seed=S] -> replaces the data with a synthetic dataset (DatasetGenerator)
+ *
+ * Export and import answer 409 under the columnar and sharded profiles, whose stores the message table does not
+ * track (see BulkTransferService).
+ *
+ *   curl -s localhost:8080/admin/export -o snapshot.smd
+ *   curl -s --data-binary @snapshot.smd -H 'Content-Type: application/octet-stream' localhost:8080/admin/import
+ */
+@RestController
+@RequestMapping("/admin")
+@ConditionalOnProperty(prefix = "app.admin", name = "enabled", havingValue = "true")
+public class AdminController {
+
+    public static final String PATH_PREFIX = "/admin/";
+
+    private final BulkTransferService bulkTransferService;
+    private final DatasetGenerator datasetGenerator;
+    private final GeneratorProperties generatorProperties;
+
+    public AdminController(BulkTransferService bulkTransferService, DatasetGenerator datasetGenerator,
+                           GeneratorProperties generatorProperties) {
+        this.bulkTransferService = bulkTransferService;
+        this.datasetGenerator = datasetGenerator;
+        this.generatorProperties = generatorProperties;
+    }
+
+    /*
+     * ------> Export All Data <------
+     * Written straight to the response as rows are read, nothing is held in memory
+     */
+    @GetMapping("export")
+    public void exportData(HttpServletResponse response) throws IOException {
+        if (!bulkTransferService.isTransferSupported()) {
+            response.setStatus(HttpStatus.CONFLICT.value());
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"social-media.smd\"");
+        bulkTransferService.export(response.getOutputStream());
+    }
+
+    /*
+     * ------> Import All Data <------
+     */
+    @PostMapping(value = "import", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<TransferCounts> importData(HttpServletRequest request) throws IOException {
+        if (!bulkTransferService.isTransferSupported()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.OK).body(bulkTransferService.importData(request.getInputStream()));
+        } catch (IllegalArgumentException | EOFException | DataAccessException e) {
+            // Malformed or truncated dump, or rows that violate a constraint: nothing was changed
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    /*
+     * ------> Generate Synthetic Dataset <------
+     */
+    @PostMapping("generate")
+    public ResponseEntity<TransferCounts> generateData(@RequestParam int accounts, @RequestParam int messages,
+                                                       @RequestParam(required = false) Long seed) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.OK)
+                    .body(datasetGenerator.generate(accounts, messages, seed != null ? seed : generatorProperties.getSeed()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.admin;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.admin")
+public class AdminProperties {
+
+    // Expose the /admin endpoints (bulk export/import). Off by default, they are not authenticated.
+    private boolean enabled = false;
+
+    // Rows per JDBC batch on import
+    private int batchSize = 5000;
+
+    // JDBC fetch size for export queries
+    private int fetchSize = 10000;
+}
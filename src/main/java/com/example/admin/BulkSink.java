@@ -0,0 +1,68 @@
+package com.example.admin;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/*
+ * Where a BulkSource puts its rows during BulkTransferService.load. Rows are added to JDBC batches that are sent
+ * every batch-size rows. The foreign key is off during the load, so accounts and messages may come in any order.
+ */
+public class BulkSink {
+
+    private final PreparedStatement accountInsert;
+    private final PreparedStatement messageInsert;
+    private final int batchSize;
+    private long accounts;
+    private long messages;
+
+    BulkSink(PreparedStatement accountInsert, PreparedStatement messageInsert, int batchSize) {
+        this.accountInsert = accountInsert;
+        this.messageInsert = messageInsert;
+        this.batchSize = batchSize;
+    }
+
+    public void account(int accountId, String username, String password) throws SQLException {
+        accountInsert.setInt(1, accountId);
+        accountInsert.setString(2, username);
+        accountInsert.setString(3, password);
+        accountInsert.addBatch();
+        if (++accounts % batchSize == 0) {
+            accountInsert.executeBatch();
+        }
+    }
+
+    public void message(int messageId, Integer postedBy, String messageText, Long timePostedEpoch, long version)
+            throws SQLException {
+        messageInsert.setInt(1, messageId);
+        if (postedBy != null) {
+            messageInsert.setInt(2, postedBy);
+        } else {
+            messageInsert.setNull(2, Types.INTEGER);
+        }
+        messageInsert.setString(3, messageText);
+        if (timePostedEpoch != null) {
+            messageInsert.setLong(4, timePostedEpoch);
+        } else {
+            messageInsert.setNull(4, Types.BIGINT);
+        }
+        messageInsert.setLong(5, version);
+        messageInsert.addBatch();
+        if (++messages % batchSize == 0) {
+            messageInsert.executeBatch();
+        }
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    void flush() throws SQLException {
+        accountInsert.executeBatch();
+        messageInsert.executeBatch();
+    }
+}
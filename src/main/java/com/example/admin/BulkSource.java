@@ -0,0 +1,11 @@
+package com.example.admin;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+// Rows for BulkTransferService.load, e.g. a parsed dump or the synthetic dataset generator
+@FunctionalInterface
+public interface BulkSource {
+
+    void writeTo(BulkSink sink) throws IOException, SQLException;
+}
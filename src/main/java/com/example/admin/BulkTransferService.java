@@ -0,0 +1,347 @@
+package com.example.admin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.archive.MessageArchive;
+import com.example.collections.IntIntHashMap;
+import com.example.tombstone.MessageTombstones;
+
+/*
+ * Bulk export / import of the account and message tables.
+ *
+ * Dump format (big endian, java.io.DataOutput): int magic "SMD1", then an 'A' section of accounts followed by an
+ * 'M' section of messages. Each row starts with a ROW byte and a section ends with an END byte, so both sides
+ * stream and neither needs to know row counts up front. Nullable columns are a presence boolean plus the value.
+ *
+ *   account: int accountId, utf username, nullable utf password
+ *   message: int messageId, nullable int postedBy, nullable utf messageText, nullable long timePostedEpoch, long version
+ *
+ * Export reads both tables in one serializable read-only transaction (a snapshot in H2) with a large fetch size.
+ * Export and import are refused under the columnar and sharded profiles: those stores only seed from the message
+ * table and never write back to it, so an export would miss every change since startup and a round trip would
+ * lose it. The dataset generator's load still works there, the stores reload from the table afterwards.
+ * Import (and any other BulkSource, see load) replaces both tables (and drops any tombstones): the message ->
+ * account foreign key (and the index behind it) is dropped for the load and recreated afterwards in one pass, rows
+ * go in as JDBC batches inside a single transaction, and the id sequences are moved past the highest imported id.
+ * Passwords are exported as stored (hashes, or legacy plaintext).
+ */
+@Service
+public class BulkTransferService {
+
+    public static final int MAGIC = 0x534D4431; // "SMD1"
+
+    private static final Logger log = LoggerFactory.getLogger(BulkTransferService.class);
+    private static final byte ACCOUNTS = 'A';
+    private static final byte MESSAGES = 'M';
+    private static final byte ROW = 1;
+    private static final byte END = 0;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final String INSERT_ACCOUNT = "insert into account (accountId, username, password) values (?, ?, ?)";
+    private static final String INSERT_MESSAGE =
+            "insert into message (messageId, postedBy, messageText, timePostedEpoch, version) values (?, ?, ?, ?, ?)";
+
+    private final AdminProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate importTransaction;
+    private final ApplicationEventPublisher events;
+    private final MessageArchive archive;
+    private final MessageTombstones tombstones;
+    private final boolean transferSupported;
+
+    public BulkTransferService(AdminProperties properties, JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager, ApplicationEventPublisher events,
+                               ObjectProvider<MessageArchive> archive, MessageTombstones tombstones,
+                               Environment environment) {
+        this.properties = properties;
+        // Own template so the large fetch size does not leak into the rest of the app
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(properties.getFetchSize());
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.snapshotTransaction.setReadOnly(true);
+        this.importTransaction = new TransactionTemplate(transactionManager);
+        this.events = events;
+        this.archive = archive.getIfAvailable();
+        this.tombstones = tombstones;
+        // Same condition JpaMessageStore is registered under
+        this.transferSupported = environment.acceptsProfiles(Profiles.of("!columnar & !sharded"));
+    }
+
+    // Whether the message table holds the current messages, so export and import see what the app serves
+    public boolean isTransferSupported() {
+        return transferSupported;
+    }
+
+    /*
+     * ------> Export <------
+     */
+    public TransferCounts export(OutputStream target) throws IOException {
+        checkTransferSupported();
+        long start = System.nanoTime();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, BUFFER_BYTES));
+        out.writeInt(MAGIC);
+        long[] counts = new long[2];
+        try {
+            snapshotTransaction.executeWithoutResult(status -> {
+                counts[0] = exportAccounts(out);
+                counts[1] = exportMessages(out);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        TransferCounts result = new TransferCounts(counts[0], counts[1], (System.nanoTime() - start) / 1_000_000);
+        log.info("Exported {} accounts and {} messages in {} ms", result.getAccounts(), result.getMessages(), result.getMillis());
+        return result;
+    }
+
+    private long exportAccounts(DataOutputStream out) {
+        long[] rows = new long[1];
+        write(out, ACCOUNTS);
+        jdbcTemplate.query("select accountId, username, password from account order by accountId", resultSet -> {
+            try {
+                out.writeByte(ROW);
+                out.writeInt(resultSet.getInt(1));
+                out.writeUTF(resultSet.getString(2));
+                writeNullableString(out, resultSet.getString(3));
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        write(out, END);
+        return rows[0];
+    }
+
+    // Archived messages follow the table rows; one caught in both tiers mid-move is exported once, from the table.
+    // Soft-deleted messages are left out.
+    private long exportMessages(DataOutputStream out) {
+        long[] rows = new long[1];
+        IntIntHashMap exported = archive != null && !archive.isEmpty() ? new IntIntHashMap(1024, 0) : null;
+        write(out, MESSAGES);
+        jdbcTemplate.query("select messageId, postedBy, messageText, timePostedEpoch, version from message m "
+                + "where not exists (select 1 from message_tombstone t where t.messageId = m.messageId) order by messageId",
+                resultSet -> {
+                    try {
+                        out.writeByte(ROW);
+                        out.writeInt(resultSet.getInt(1));
+                        writeNullableInt(out, resultSet, 2);
+                        writeNullableString(out, resultSet.getString(3));
+                        writeNullableLong(out, resultSet, 4);
+                        out.writeLong(resultSet.getLong(5));
+                        rows[0]++;
+                        if (exported != null) {
+                            exported.put(resultSet.getInt(1), 1);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        if (exported != null) {
+            archive.forEach(row -> {
+                if (exported.containsKey(row.getMessageId()) || tombstones.contains(row.getMessageId())) {
+                    return;
+                }
+                try {
+                    out.writeByte(ROW);
+                    out.writeInt(row.getMessageId());
+                    out.writeBoolean(row.getPostedBy() != null);
+                    if (row.getPostedBy() != null) {
+                        out.writeInt(row.getPostedBy());
+                    }
+                    writeNullableString(out, row.getMessageText());
+                    out.writeBoolean(row.getTimePostedEpoch() != null);
+                    if (row.getTimePostedEpoch() != null) {
+                        out.writeLong(row.getTimePostedEpoch());
+                    }
+                    out.writeLong(row.getVersion());
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        write(out, END);
+        return rows[0];
+    }
+
+    /*
+     * ------> Import <------
+     * Replaces the current accounts and messages with the dump. A malformed dump, a duplicate id/username or a
+     * message whose author is not in the dump rolls the whole load back and leaves the old data in place.
+     */
+    public TransferCounts importData(InputStream source) throws IOException {
+        checkTransferSupported();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source, BUFFER_BYTES));
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an account/message dump");
+        }
+        return load(sink -> {
+            expectSection(in, ACCOUNTS);
+            while (nextRow(in)) {
+                sink.account(in.readInt(), in.readUTF(), readNullableString(in));
+            }
+            expectSection(in, MESSAGES);
+            while (nextRow(in)) {
+                sink.message(in.readInt(), in.readBoolean() ? in.readInt() : null, readNullableString(in),
+                        in.readBoolean() ? in.readLong() : null, in.readLong());
+            }
+        });
+    }
+
+    /*
+     * ------> Bulk Load <------
+     * Replaces both tables with the rows of source, the fastest write path into the database. Used by import and by
+     * the dataset generator.
+     */
+    public TransferCounts load(BulkSource source) throws IOException {
+        long start = System.nanoTime();
+
+        // DDL commits in H2, so the constraint is dropped before the load transaction and always put back after it
+        String foreignKey = messageForeignKeyName();
+        if (foreignKey != null) {
+            jdbcTemplate.execute("alter table message drop constraint \"" + foreignKey + "\"");
+        }
+        long[] counts = new long[2];
+        try {
+            importTransaction.executeWithoutResult(status -> jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                jdbcTemplate.update("delete from message_tombstone");
+                jdbcTemplate.update("delete from message");
+                jdbcTemplate.update("delete from account");
+                try (PreparedStatement accountInsert = connection.prepareStatement(INSERT_ACCOUNT);
+                     PreparedStatement messageInsert = connection.prepareStatement(INSERT_MESSAGE)) {
+                    BulkSink sink = new BulkSink(accountInsert, messageInsert, properties.getBatchSize());
+                    source.writeTo(sink);
+                    sink.flush();
+                    counts[0] = sink.getAccounts();
+                    counts[1] = sink.getMessages();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                checkAuthorsExist();
+                return null;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // Either the new rows passed checkAuthorsExist or the old rows are back, so the index is built without
+            // checking every row a second time
+            jdbcTemplate.execute("alter table message add constraint \"" + (foreignKey != null ? foreignKey : "MESSAGE_POSTEDBY_FK")
+                    + "\" foreign key (postedBy) references account(accountId) nocheck");
+        }
+        restartSequences();
+
+        TransferCounts result = new TransferCounts(counts[0], counts[1], (System.nanoTime() - start) / 1_000_000);
+        log.info("Loaded {} accounts and {} messages in {} ms", result.getAccounts(), result.getMessages(), result.getMillis());
+        events.publishEvent(new DataImportedEvent(result));
+        return result;
+    }
+
+    private void checkTransferSupported() {
+        if (!transferSupported) {
+            throw new IllegalStateException("Export and import need the table-backed message store");
+        }
+    }
+
+    // Same check the foreign key would make, but inside the load transaction so bad input can still roll back
+    private void checkAuthorsExist() {
+        Long orphans = jdbcTemplate.queryForObject("select count(*) from message m where m.postedBy is not null "
+                + "and not exists (select 1 from account a where a.accountId = m.postedBy)", Long.class);
+        if (orphans != null && orphans > 0) {
+            throw new IllegalArgumentException(orphans + " loaded messages reference accounts that were not loaded");
+        }
+    }
+
+    private String messageForeignKeyName() {
+        List<String> names = jdbcTemplate.queryForList("select constraint_name from information_schema.table_constraints "
+                + "where table_name = 'MESSAGE' and constraint_type = 'FOREIGN KEY'", String.class);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    // Entities take their ids from hibernate_sequence; the identity columns are kept in step for plain SQL inserts
+    private void restartSequences() {
+        long maxAccountId = jdbcTemplate.queryForObject("select coalesce(max(accountId), 0) from account", Long.class);
+        long maxMessageId = jdbcTemplate.queryForObject("select coalesce(max(messageId), 0) from message", Long.class);
+        long next = Math.max(maxAccountId, maxMessageId) + 1;
+        jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + next);
+        jdbcTemplate.execute("alter table account alter column accountId restart with " + (maxAccountId + 1));
+        jdbcTemplate.execute("alter table message alter column messageId restart with " + (maxMessageId + 1));
+    }
+
+    private static void expectSection(DataInputStream in, byte section) throws IOException {
+        if (in.readByte() != section) {
+            throw new IllegalArgumentException("Malformed dump, expected section '" + (char) section + "'");
+        }
+    }
+
+    private static boolean nextRow(DataInputStream in) throws IOException {
+        byte marker = in.readByte();
+        if (marker != ROW && marker != END) {
+            throw new IllegalArgumentException("Malformed dump, unexpected row marker " + marker);
+        }
+        return marker == ROW;
+    }
+
+    private static void write(DataOutputStream out, byte value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void writeNullableInt(DataOutputStream out, ResultSet resultSet, int column) throws IOException, SQLException {
+        int value = resultSet.getInt(column);
+        boolean present = !resultSet.wasNull();
+        out.writeBoolean(present);
+        if (present) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeNullableLong(DataOutputStream out, ResultSet resultSet, int column) throws IOException, SQLException {
+        long value = resultSet.getLong(column);
+        boolean present = !resultSet.wasNull();
+        out.writeBoolean(present);
+        if (present) {
+            out.writeLong(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
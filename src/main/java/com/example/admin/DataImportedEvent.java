@@ -0,0 +1,18 @@
+package com.example.admin;
+
+/*
+ * Published after a bulk import replaced the account and message tables, so in-memory structures derived from them
+ * (author index, columnar store) rebuild from the new data.
+ */
+public class DataImportedEvent {
+
+    private final TransferCounts counts;
+
+    public DataImportedEvent(TransferCounts counts) {
+        this.counts = counts;
+    }
+
+    public TransferCounts getCounts() {
+        return counts;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.admin;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.example.security.PasswordHasher;
+
+/*
+ * Deterministic synthetic dataset for benchmarks and load tests, loaded through BulkTransferService.load (batched
+ * inserts, foreign key rebuilt once, sequences moved past the new ids).
+ *
+ *  - accounts 1..N named user<id>, all with the password "password" (hashed once and shared, hashing N passwords
+ *    at the calibrated work factor would take longer than the load itself)
+ *  - messages 1..M whose authors are Zipf distributed by account id, so account 1 is the most prolific
+ *  - posting times ascending with the message id and skewed towards the end of the range
+ *  - text of log-normally distributed length, 1 to 255 characters, made of words from a small vocabulary
+ *
+ * Runs at startup when app.generator.messages > 0 (before the app reports ready), or on demand through
+ * POST /admin/generate.
+ */
+@Component
+@Order(0) // before the warm-up runner
+public class DatasetGenerator implements ApplicationRunner {
+
+    public static final String PASSWORD = "password";
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final double TEXT_LENGTH_SIGMA = 0.7;
+    private static final String[] WORDS = {
+        "the", "a", "new", "post", "today", "just", "about", "really", "great", "day", "coffee", "code", "java",
+        "spring", "release", "weekend", "music", "game", "team", "project", "idea", "morning", "night", "city",
+        "photo", "trip", "friends", "love", "work", "update", "finally", "again", "what", "why", "how", "thanks",
+        "everyone", "check", "this", "out", "so", "good", "bad", "news", "launch", "bug", "fixed", "shipped",
+        "reading", "book", "movie", "running", "dinner", "lunch", "tired", "happy", "busy", "more", "soon", "ok",
+        "#tech", "#life", "#dev", "@all"
+    };
+
+    private final BulkTransferService bulkTransferService;
+    private final PasswordHasher passwordHasher;
+    private final GeneratorProperties properties;
+
+    public DatasetGenerator(BulkTransferService bulkTransferService, PasswordHasher passwordHasher,
+                            GeneratorProperties properties) {
+        this.bulkTransferService = bulkTransferService;
+        this.passwordHasher = passwordHasher;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (properties.getMessages() > 0) {
+            generate(Math.max(1, properties.getAccounts()), properties.getMessages(), properties.getSeed());
+        }
+    }
+
+    public TransferCounts generate(int accounts, int messages, long seed) throws IOException {
+        if (accounts < 1 || messages < 0) {
+            throw new IllegalArgumentException("Need at least one account and a non-negative message count");
+        }
+        long start = System.nanoTime();
+        String passwordHash = passwordHasher.hash(PASSWORD);
+        SplittableRandom random = new SplittableRandom(seed);
+        ZipfSampler authors = new ZipfSampler(accounts, properties.getZipfExponent());
+        long span = properties.getEndEpoch() - properties.getStartEpoch();
+        double timeExponent = 1.0 / Math.max(1e-3, properties.getTimeSkew());
+        double logMedianLength = Math.log(Math.max(1, properties.getMedianTextLength()));
+        StringBuilder text = new StringBuilder(MAX_TEXT_LENGTH + 16);
+
+        TransferCounts counts = bulkTransferService.load(sink -> {
+            for (int accountId = 1; accountId <= accounts; accountId++) {
+                sink.account(accountId, "user" + accountId, passwordHash);
+            }
+            for (int messageId = 1; messageId <= messages; messageId++) {
+                long epoch = properties.getStartEpoch()
+                        + (long) (span * Math.pow((double) messageId / messages, timeExponent));
+                int length = (int) Math.round(Math.exp(logMedianLength + TEXT_LENGTH_SIGMA * gaussian(random)));
+                sink.message(messageId, authors.sample(random), text(random, text, length), epoch, 0L);
+            }
+        });
+        log.info("Generated {} accounts and {} messages (seed {}) in {} ms", counts.getAccounts(), counts.getMessages(),
+                seed, (System.nanoTime() - start) / 1_000_000);
+        return counts;
+    }
+
+    private static String text(SplittableRandom random, StringBuilder text, int length) {
+        int target = Math.max(1, Math.min(MAX_TEXT_LENGTH, length));
+        text.setLength(0);
+        while (text.length() < target) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setLength(target);
+        return text.toString();
+    }
+
+    // Box-Muller, SplittableRandom has no nextGaussian on Java 11
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
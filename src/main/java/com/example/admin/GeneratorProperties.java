@@ -0,0 +1,32 @@
+package com.example.admin;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.generator")
+public class GeneratorProperties {
+
+    // Generate this many accounts / messages at startup, replacing the seed data; 0 messages leaves the data alone
+    private int accounts = 0;
+    private int messages = 0;
+
+    // Same seed, same sizes and same settings give the same dataset
+    private long seed = 42;
+
+    // Author popularity: message counts per author follow Zipf with this exponent (1.0 is the classic shape)
+    private double zipfExponent = 1.0;
+
+    // Posting times run from start to end epoch, message ids ascending with time. A skew above 1 puts more of the
+    // messages near the end (a growing site), 1 spreads them evenly.
+    private long startEpoch = 1575000000L;
+    private long endEpoch = 1669947792L;
+    private double timeSkew = 3.0;
+
+    // Text lengths are log-normal around this median, capped at the 255 character column
+    private int medianTextLength = 60;
+}
@@ -0,0 +1,18 @@
+package com.example.admin;
+
+import lombok.Getter;
+
+// Rows moved by one export or import, returned to the caller and logged
+@Getter
+public class TransferCounts {
+
+    private final long accounts;
+    private final long messages;
+    private final long millis;
+
+    public TransferCounts(long accounts, long messages, long millis) {
+        this.accounts = accounts;
+        this.messages = messages;
+        this.millis = millis;
+    }
+}
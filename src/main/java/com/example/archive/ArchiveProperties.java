@@ -0,0 +1,34 @@
+package com.example.archive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.archive")
+public class ArchiveProperties {
+
+    // Move old messages out of the message table into compressed segment files
+    private boolean enabled = false;
+
+    // Where segment files are written; the directory is emptied on startup
+    private String directory = System.getProperty("java.io.tmpdir") + "/social-media-archive";
+
+    // Messages posted longer ago than this (by timePostedEpoch) are archived
+    private long maxAgeSeconds = 30L * 24 * 60 * 60;
+
+    // The oldest messages beyond this many are archived whatever their age, 0 means no cap
+    private int maxHotMessages = 0;
+
+    // How often the archiver runs
+    private long intervalSeconds = 60;
+
+    // Messages per segment file; one archiver run writes as many segments as it needs
+    private int segmentMaxMessages = 50000;
+
+    // Uncompressed size of a block, the unit of compression and of a lookup
+    private int blockBytes = 64 * 1024;
+}
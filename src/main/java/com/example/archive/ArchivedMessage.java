@@ -0,0 +1,45 @@
+package com.example.archive;
+
+import com.example.entity.Message;
+
+// A message row as stored in a segment, including the optimistic concurrency version the entity does not map
+public class ArchivedMessage {
+
+    final int messageId;
+    final Integer postedBy;
+    final String messageText;
+    final Long timePostedEpoch;
+    final long version;
+
+    ArchivedMessage(int messageId, Integer postedBy, String messageText, Long timePostedEpoch, long version) {
+        this.messageId = messageId;
+        this.postedBy = postedBy;
+        this.messageText = messageText;
+        this.timePostedEpoch = timePostedEpoch;
+        this.version = version;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public Integer getPostedBy() {
+        return postedBy;
+    }
+
+    public String getMessageText() {
+        return messageText;
+    }
+
+    public Long getTimePostedEpoch() {
+        return timePostedEpoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Message toMessage() {
+        return new Message(messageId, postedBy, messageText, timePostedEpoch);
+    }
+}
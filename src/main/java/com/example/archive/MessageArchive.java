@@ -0,0 +1,167 @@
+package com.example.archive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.example.admin.DataImportedEvent;
+import com.example.collections.IntIntHashMap;
+
+/*
+ * The cold tier: the set of archive segments plus tombstones for archived messages that were deleted, or moved
+ * back to the message table to be edited.
+ *
+ * Segments are immutable, so a tombstone is an id mapped to the newest segment sequence at the time it was set:
+ * every copy of that message in that segment or an older one is dead, while a copy archived again later (in a newer
+ * segment) is live. Lookups go newest segment first and stop at the first dead one.
+ *
+ * The hot table lives in an in-memory database that starts empty, so segments left over from an earlier run
+ * would resurrect messages that no longer exist; the directory is emptied on startup and after a bulk import.
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class MessageArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchive.class);
+    private static final String SUFFIX = ".seg";
+    private static final int NO_TOMBSTONE = -1;
+
+    private final ArchiveProperties properties;
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ReadWriteLock tombstoneLock = new ReentrantReadWriteLock();
+    private final IntIntHashMap tombstones = new IntIntHashMap(1024, NO_TOMBSTONE);
+    private int nextSequence = 1;
+
+    public MessageArchive(ArchiveProperties properties) {
+        this.properties = properties;
+        this.directory = Paths.get(properties.getDirectory());
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        deleteSegmentFiles();
+    }
+
+    // A bulk import replaced every message, archived ones included
+    @EventListener(DataImportedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @PreDestroy
+    public void clear() throws IOException {
+        tombstoneLock.writeLock().lock();
+        try {
+            segments.clear();
+            tombstones.clear();
+            deleteSegmentFiles();
+        } finally {
+            tombstoneLock.writeLock().unlock();
+        }
+    }
+
+    // Rows must be sorted by id; the new segment is visible to lookups when this returns
+    public void append(List<ArchivedMessage> sorted) throws IOException {
+        tombstoneLock.writeLock().lock();
+        try {
+            int sequence = nextSequence++;
+            Path path = directory.resolve(String.format("%010d%s", sequence, SUFFIX));
+            segments.add(0, Segment.write(path, sequence, sorted, properties.getBlockBytes()));
+        } finally {
+            tombstoneLock.writeLock().unlock();
+        }
+    }
+
+    public ArchivedMessage find(int messageId) {
+        tombstoneLock.readLock().lock();
+        try {
+            return findLive(messageId);
+        } finally {
+            tombstoneLock.readLock().unlock();
+        }
+    }
+
+    // Kills every archived copy of the message and returns the live one, null if there was none
+    public ArchivedMessage remove(int messageId) {
+        tombstoneLock.writeLock().lock();
+        try {
+            ArchivedMessage live = findLive(messageId);
+            if (!segments.isEmpty()) {
+                tombstones.put(messageId, (int) segments.get(0).getSequence());
+            }
+            return live;
+        } finally {
+            tombstoneLock.writeLock().unlock();
+        }
+    }
+
+    // Every live archived message, in no particular order
+    public void forEach(Consumer<ArchivedMessage> consumer) {
+        tombstoneLock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.forEach(row -> {
+                    if (segment.getSequence() > tombstones.get(row.messageId)) {
+                        consumer.accept(row);
+                    }
+                });
+            }
+        } finally {
+            tombstoneLock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getBytesOnDisk() {
+        return segments.stream().mapToLong(Segment::getBytes).sum();
+    }
+
+    private ArchivedMessage findLive(int messageId) {
+        int tombstone = tombstones.get(messageId);
+        for (Segment segment : segments) {
+            if (segment.getSequence() <= tombstone) {
+                return null;
+            }
+            ArchivedMessage row = segment.find(messageId);
+            if (row != null) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    private void deleteSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(SUFFIX) || file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        log.debug("Emptied archive directory {}", directory);
+    }
+}
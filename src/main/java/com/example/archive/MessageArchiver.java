@@ -0,0 +1,123 @@
+package com.example.archive;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+/*
+ * Background job that moves cold messages from the message table into archive segments: everything posted more
+ * than max-age-seconds ago, and the oldest messages beyond max-hot-messages, so the hot table (and its indexes)
+ * stays bounded however long the app runs.
+ *
+ * A move is: read a batch, write and publish the segment, then delete exactly those row versions from the table.
+ * Readers always try the table first, so a row is never missing in between. A row that was edited or deleted
+ * while the segment was being written keeps (or loses) its hot copy, and its archived copy is tombstoned.
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class MessageArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiver.class);
+    private static final int DELETE_BATCH = 500;
+    private static final String COLUMNS = "messageId, postedBy, messageText, timePostedEpoch, version";
+    private static final RowMapper<ArchivedMessage> ROW = (resultSet, row) -> new ArchivedMessage(resultSet.getInt(1),
+            resultSet.getObject(2, Integer.class), resultSet.getString(3), resultSet.getObject(4, Long.class),
+            resultSet.getLong(5));
+
+    private final ArchiveProperties properties;
+    private final MessageArchive archive;
+    private final JdbcTemplate jdbcTemplate;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "message-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MessageArchiver(ArchiveProperties properties, MessageArchive archive, JdbcTemplate jdbcTemplate) {
+        this.properties = properties;
+        this.archive = archive;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archiveOnce();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Archiving failed, retrying in {} s", properties.getIntervalSeconds(), e);
+            }
+        }, properties.getIntervalSeconds(), properties.getIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Moves every message that is due, one segment at a time; returns how many left the table
+    public synchronized int archiveOnce() throws IOException {
+        long start = System.nanoTime();
+        int moved = 0;
+        int segments = 0;
+        while (true) {
+            List<ArchivedMessage> batch = nextBatch();
+            if (batch.isEmpty()) {
+                break;
+            }
+            archive.append(batch);
+            segments++;
+            int[][] deleted = jdbcTemplate.batchUpdate("delete from message where messageId = ? and version = ?", batch,
+                    DELETE_BATCH, (statement, row) -> {
+                        statement.setInt(1, row.messageId);
+                        statement.setLong(2, row.version);
+                    });
+            int index = 0;
+            for (int[] counts : deleted) {
+                for (int count : counts) {
+                    if (count == 0) {
+                        archive.remove(batch.get(index).messageId);
+                    } else {
+                        moved++;
+                    }
+                    index++;
+                }
+            }
+            if (batch.size() < properties.getSegmentMaxMessages()) {
+                break;
+            }
+        }
+        if (segments > 0) {
+            log.info("Archived {} messages into {} segments in {} ms ({} segments, {} bytes on disk)", moved, segments,
+                    (System.nanoTime() - start) / 1_000_000, archive.getSegmentCount(), archive.getBytesOnDisk());
+        }
+        return moved;
+    }
+
+    private List<ArchivedMessage> nextBatch() {
+        long cutoff = System.currentTimeMillis() / 1000 - properties.getMaxAgeSeconds();
+        int limit = properties.getSegmentMaxMessages();
+        if (properties.getMaxHotMessages() > 0) {
+            long excess = jdbcTemplate.queryForObject("select count(*) from message", Long.class) - properties.getMaxHotMessages();
+            if (excess > 0) {
+                // Oldest first, the age rule alone might not pick these
+                return jdbcTemplate.query("select " + COLUMNS + " from message order by messageId limit ?", ROW,
+                        Math.min(excess, limit));
+            }
+        }
+        return jdbcTemplate.query("select " + COLUMNS + " from message where timePostedEpoch < ? order by messageId limit ?",
+                ROW, cutoff, limit);
+    }
+}
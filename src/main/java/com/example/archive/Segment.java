@@ -0,0 +1,262 @@
+package com.example.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * One immutable, memory-mapped archive segment. Rows are sorted by message id and packed into blocks of roughly
+ * block-bytes that are deflate-compressed one by one, so a lookup only inflates the block that can hold the id.
+ *
+ * File layout:
+ *   int MAGIC
+ *   compressed blocks, back to back
+ *   footer: int blockCount, then per block int firstId, int lastId, long offset, int compressedLength, int rawLength
+ *   long footerOffset, int MAGIC
+ *
+ * The footer is the segment's sparse id index (one entry per block) and is held in memory as primitive arrays.
+ * Row encoding inside a block: byte nulls (1 postedBy, 2 text, 4 epoch), int id, int postedBy, long epoch,
+ * long version, int text length, UTF-8 text.
+ */
+class Segment {
+
+    static final int MAGIC = 0x534D4131; // "SMA1"
+
+    private static final int NULL_POSTED_BY = 1;
+    private static final int NULL_TEXT = 2;
+    private static final int NULL_EPOCH = 4;
+
+    private final long sequence;
+    private final Path path;
+    private final MappedByteBuffer mapped;
+    private final int[] firstIds;
+    private final int[] lastIds;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int rows;
+
+    private Segment(long sequence, Path path, MappedByteBuffer mapped, int[] firstIds, int[] lastIds, long[] offsets,
+                    int[] compressedLengths, int[] rawLengths, int rows) {
+        this.sequence = sequence;
+        this.path = path;
+        this.mapped = mapped;
+        this.firstIds = firstIds;
+        this.lastIds = lastIds;
+        this.offsets = offsets;
+        this.compressedLengths = compressedLengths;
+        this.rawLengths = rawLengths;
+        this.rows = rows;
+    }
+
+    // Writes the rows (sorted by id) to a new segment file, atomically, and maps it
+    static Segment write(Path path, long sequence, List<ArchivedMessage> sorted, int blockBytes) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        int blocks = 0;
+        int[] firstIds = new int[8];
+        int[] lastIds = new int[8];
+        long[] offsets = new long[8];
+        int[] compressedLengths = new int[8];
+        int[] rawLengths = new int[8];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, MAGIC));
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(blockBytes + 512);
+            DataOutputStream out = new DataOutputStream(raw);
+            byte[] compressed = new byte[blockBytes + 1024];
+            int first = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                ArchivedMessage row = sorted.get(i);
+                if (raw.size() == 0) {
+                    first = row.messageId;
+                }
+                writeRow(out, row);
+                if (raw.size() >= blockBytes || i == sorted.size() - 1) {
+                    if (blocks == firstIds.length) {
+                        firstIds = Arrays.copyOf(firstIds, blocks * 2);
+                        lastIds = Arrays.copyOf(lastIds, blocks * 2);
+                        offsets = Arrays.copyOf(offsets, blocks * 2);
+                        compressedLengths = Arrays.copyOf(compressedLengths, blocks * 2);
+                        rawLengths = Arrays.copyOf(rawLengths, blocks * 2);
+                    }
+                    byte[] block = raw.toByteArray();
+                    if (compressed.length < block.length + 1024) {
+                        compressed = new byte[block.length + 1024];
+                    }
+                    deflater.reset();
+                    deflater.setInput(block);
+                    deflater.finish();
+                    int length = deflater.deflate(compressed);
+                    while (!deflater.finished()) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                        length += deflater.deflate(compressed, length, compressed.length - length);
+                    }
+                    firstIds[blocks] = first;
+                    lastIds[blocks] = row.messageId;
+                    offsets[blocks] = channel.position();
+                    compressedLengths[blocks] = length;
+                    rawLengths[blocks] = block.length;
+                    channel.write(ByteBuffer.wrap(compressed, 0, length));
+                    blocks++;
+                    raw.reset();
+                }
+            }
+            long footerOffset = channel.position();
+            ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES + blocks * 24 + Long.BYTES + Integer.BYTES);
+            footer.putInt(blocks);
+            for (int block = 0; block < blocks; block++) {
+                footer.putInt(firstIds[block]).putInt(lastIds[block]).putLong(offsets[block])
+                        .putInt(compressedLengths[block]).putInt(rawLengths[block]);
+            }
+            footer.putLong(footerOffset).putInt(MAGIC).flip();
+            channel.write(footer);
+            channel.force(true);
+        } finally {
+            deflater.end();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(path, sequence, sorted.size());
+    }
+
+    static Segment open(Path path, long sequence, int rows) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int end = mapped.capacity();
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(end - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not an archive segment: " + path);
+        }
+        int footer = (int) mapped.getLong(end - Integer.BYTES - Long.BYTES);
+        int blocks = mapped.getInt(footer);
+        int[] firstIds = new int[blocks];
+        int[] lastIds = new int[blocks];
+        long[] offsets = new long[blocks];
+        int[] compressedLengths = new int[blocks];
+        int[] rawLengths = new int[blocks];
+        int position = footer + Integer.BYTES;
+        for (int block = 0; block < blocks; block++, position += 24) {
+            firstIds[block] = mapped.getInt(position);
+            lastIds[block] = mapped.getInt(position + 4);
+            offsets[block] = mapped.getLong(position + 8);
+            compressedLengths[block] = mapped.getInt(position + 16);
+            rawLengths[block] = mapped.getInt(position + 20);
+        }
+        return new Segment(sequence, path, mapped, firstIds, lastIds, offsets, compressedLengths, rawLengths, rows);
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    long getBytes() {
+        return mapped.capacity();
+    }
+
+    boolean mayContain(int messageId) {
+        return firstIds.length > 0 && messageId >= firstIds[0] && messageId <= lastIds[lastIds.length - 1];
+    }
+
+    // Inflates the one block that can hold the id, null if the segment does not have it
+    ArchivedMessage find(int messageId) {
+        if (!mayContain(messageId)) {
+            return null;
+        }
+        int block = Arrays.binarySearch(firstIds, messageId);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        if (block < 0 || messageId > lastIds[block]) {
+            return null;
+        }
+        ByteBuffer rows = inflate(block);
+        while (rows.hasRemaining()) {
+            ArchivedMessage row = readRow(rows);
+            if (row.messageId == messageId) {
+                return row;
+            }
+            if (row.messageId > messageId) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    void forEach(Consumer<ArchivedMessage> consumer) {
+        for (int block = 0; block < firstIds.length; block++) {
+            ByteBuffer rows = inflate(block);
+            while (rows.hasRemaining()) {
+                consumer.accept(readRow(rows));
+            }
+        }
+    }
+
+    private ByteBuffer inflate(int block) {
+        ByteBuffer input = mapped.duplicate();
+        input.position((int) offsets[block]).limit((int) offsets[block] + compressedLengths[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = inflater.inflate(raw);
+            if (length != raw.length) {
+                throw new UncheckedIOException(new IOException("Truncated block " + block + " in " + path));
+            }
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Corrupt block " + block + " in " + path, e));
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static void writeRow(DataOutputStream out, ArchivedMessage row) throws IOException {
+        int nulls = (row.postedBy == null ? NULL_POSTED_BY : 0) | (row.messageText == null ? NULL_TEXT : 0)
+                | (row.timePostedEpoch == null ? NULL_EPOCH : 0);
+        out.writeByte(nulls);
+        out.writeInt(row.messageId);
+        out.writeInt(row.postedBy == null ? 0 : row.postedBy);
+        out.writeLong(row.timePostedEpoch == null ? 0 : row.timePostedEpoch);
+        out.writeLong(row.version);
+        byte[] text = row.messageText == null ? new byte[0] : row.messageText.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+    }
+
+    private static ArchivedMessage readRow(ByteBuffer in) {
+        int nulls = in.get();
+        int messageId = in.getInt();
+        int postedBy = in.getInt();
+        long epoch = in.getLong();
+        long version = in.getLong();
+        byte[] text = new byte[in.getInt()];
+        in.get(text);
+        return new ArchivedMessage(messageId, (nulls & NULL_POSTED_BY) != 0 ? null : postedBy,
+                (nulls & NULL_TEXT) != 0 ? null : new String(text, StandardCharsets.UTF_8),
+                (nulls & NULL_EPOCH) != 0 ? null : epoch, version);
+    }
+}
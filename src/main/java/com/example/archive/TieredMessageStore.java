@@ -0,0 +1,208 @@
+package com.example.archive;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.collections.IntIntHashMap;
+import com.example.collections.IntIntHashMap.IntIntConsumer;
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+import com.example.repository.JpaMessageStore;
+import com.example.repository.MessageStore;
+
+/*
+ * MessageStore over both tiers: the message table (through JpaMessageStore) first, the archive when the table does
+ * not have the message. Callers cannot tell where a message lives.
+ *
+ * Archived messages are immutable, so editing one moves it back to the table first (same id and version, and the
+ * archived copy is tombstoned); the archiver moves it out again once it is due. Listings that cover every message
+ * (findAll, scanAuthors) read the whole archive and cost accordingly.
+ */
+@Component
+@Primary
+@Profile("!columnar & !sharded")
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class TieredMessageStore implements MessageStore {
+
+    private static final Comparator<Message> BY_ID = Comparator.comparing(Message::getMessageId);
+
+    private final JpaMessageStore hot;
+    private final MessageArchive archive;
+    private final JdbcTemplate jdbcTemplate;
+
+    public TieredMessageStore(JpaMessageStore hot, MessageArchive archive, JdbcTemplate jdbcTemplate) {
+        this.hot = hot;
+        this.archive = archive;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Message save(Message message) {
+        return hot.save(message);
+    }
+
+    @Override
+    public List<Message> findAll() {
+        List<Message> messages = hot.findAll();
+        if (archive.isEmpty()) {
+            return messages;
+        }
+        List<Message> archived = new ArrayList<>();
+        archive.forEach(row -> archived.add(row.toMessage()));
+        return merge(messages, archived);
+    }
+
+    @Override
+    public Optional<Message> findById(Integer messageId) {
+        Optional<Message> message = hot.findById(messageId);
+        if (message.isPresent() || archive.isEmpty()) {
+            return message;
+        }
+        return Optional.ofNullable(archive.find(messageId)).map(ArchivedMessage::toMessage);
+    }
+
+    @Override
+    public List<Message> findByPostedBy(Integer postedBy) {
+        List<Message> messages = hot.findByPostedBy(postedBy);
+        if (archive.isEmpty()) {
+            return messages;
+        }
+        List<Message> archived = new ArrayList<>();
+        archive.forEach(row -> {
+            if (postedBy.equals(row.postedBy)) {
+                archived.add(row.toMessage());
+            }
+        });
+        return merge(messages, archived);
+    }
+
+    // Only the ids the table did not return are looked up in the archive, one block each
+    @Override
+    public List<Message> findAllById(int[] messageIds) {
+        List<Message> messages = hot.findAllById(messageIds);
+        if (messages.size() == messageIds.length || archive.isEmpty()) {
+            return messages;
+        }
+        IntIntHashMap found = new IntIntHashMap(messages.size(), 0);
+        for (Message message : messages) {
+            found.put(message.getMessageId(), 1);
+        }
+        List<Message> archived = new ArrayList<>();
+        for (int messageId : messageIds) {
+            if (!found.containsKey(messageId)) {
+                ArchivedMessage row = archive.find(messageId);
+                if (row != null) {
+                    archived.add(row.toMessage());
+                }
+            }
+        }
+        return merge(messages, archived);
+    }
+
+    @Override
+    public void scanAuthors(IntIntConsumer consumer) {
+        hot.scanAuthors(consumer);
+        archive.forEach(row -> consumer.accept(row.messageId, row.postedBy == null ? 0 : row.postedBy));
+    }
+
+    @Override
+    public Optional<Message> deleteById(Integer messageId) {
+        Optional<Message> message = hot.deleteById(messageId);
+        if (message.isPresent() || archive.isEmpty()) {
+            return message;
+        }
+        return Optional.ofNullable(archive.remove(messageId)).map(ArchivedMessage::toMessage);
+    }
+
+    @Override
+    public void deleteAllById(int[] messageIds) {
+        hot.deleteAllById(messageIds);
+        if (!archive.isEmpty()) {
+            for (int messageId : messageIds) {
+                archive.remove(messageId);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Long> findVersionById(Integer messageId) {
+        Optional<Long> version = hot.findVersionById(messageId);
+        if (version.isPresent() || archive.isEmpty()) {
+            return version;
+        }
+        return Optional.ofNullable(archive.find(messageId)).map(ArchivedMessage::getVersion);
+    }
+
+    @Override
+    public Optional<VersionedMessage> findVersionedById(Integer messageId) {
+        Optional<VersionedMessage> message = hot.findVersionedById(messageId);
+        if (message.isPresent() || archive.isEmpty()) {
+            return message;
+        }
+        return Optional.ofNullable(archive.find(messageId)).map(row -> new VersionedMessage(row.toMessage(), row.version));
+    }
+
+    @Override
+    public int updateTextIfVersion(Integer messageId, String messageText, Long version) {
+        int updated = hot.updateTextIfVersion(messageId, messageText, version);
+        if (updated == 0 && !archive.isEmpty() && rehydrate(messageId, version)) {
+            updated = hot.updateTextIfVersion(messageId, messageText, version);
+        }
+        return updated;
+    }
+
+    // Moves an archived message back into the table if its version matches; false if there was nothing to move
+    private synchronized boolean rehydrate(Integer messageId, Long version) {
+        ArchivedMessage row = archive.find(messageId);
+        if (row == null || version == null || row.version != version) {
+            return false;
+        }
+        try {
+            jdbcTemplate.update("insert into message (messageId, postedBy, messageText, timePostedEpoch, version) values (?, ?, ?, ?, ?)",
+                    row.messageId, row.postedBy, row.messageText, row.timePostedEpoch, row.version);
+        } catch (DuplicateKeyException e) {
+            // Still (or again) in the table: the archiver has not deleted it yet
+        }
+        archive.remove(messageId);
+        return true;
+    }
+
+    // Both lists in id order; a message caught in both tiers mid-move is taken from the table
+    private static List<Message> merge(List<Message> hot, List<Message> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        hot.sort(BY_ID);
+        archived.sort(BY_ID);
+        List<Message> merged = new ArrayList<>(hot.size() + archived.size());
+        int h = 0;
+        int a = 0;
+        while (h < hot.size() || a < archived.size()) {
+            if (a == archived.size()) {
+                merged.add(hot.get(h++));
+            } else if (h == hot.size()) {
+                merged.add(archived.get(a++));
+            } else {
+                int order = Integer.compare(hot.get(h).getMessageId(), archived.get(a).getMessageId());
+                if (order <= 0) {
+                    if (order == 0) {
+                        a++;
+                    }
+                    merged.add(hot.get(h++));
+                } else {
+                    merged.add(archived.get(a++));
+                }
+            }
+        }
+        return merged;
+    }
+}
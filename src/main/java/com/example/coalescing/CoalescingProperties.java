@@ -0,0 +1,16 @@
+package com.example.coalescing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.coalescing")
+public class CoalescingProperties {
+
+    // Concurrent reads of the same key share one load; off, every read goes to the store
+    private boolean enabled = true;
+}
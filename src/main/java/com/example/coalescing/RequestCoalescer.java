@@ -0,0 +1,22 @@
+package com.example.coalescing;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Creates the SingleFlight groups, each with its own in-flight table and metrics
+@Component
+public class RequestCoalescer {
+
+    private final CoalescingProperties properties;
+    private final MeterRegistry registry;
+
+    public RequestCoalescer(CoalescingProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    public <K, V> SingleFlight<K, V> group(String name) {
+        return new SingleFlight<>(name, properties, registry);
+    }
+}
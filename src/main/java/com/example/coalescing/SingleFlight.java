@@ -0,0 +1,104 @@
+package com.example.coalescing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Request coalescing for one kind of read: while a load for a key is in flight, further callers for that key
+ * wait for it and get its result (or its exception) instead of loading themselves. Nothing is kept once the load
+ * finishes, so this is not a cache and never serves anything older than a load that was already running.
+ *
+ * Writers call forget(key) after they commit, so a read that starts after a write does not join a load that may
+ * have read the row before it. Results are shared between threads and must not be modified by callers.
+ *
+ * Metrics, tagged with the group name: coalescing.requests (outcome=load|shared) and coalescing.ratio, the share
+ * of requests that were served by another caller's load.
+ */
+public class SingleFlight<K, V> {
+
+    public static final String REQUESTS_METRIC = "coalescing.requests";
+    public static final String RATIO_METRIC = "coalescing.ratio";
+
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    private final CoalescingProperties properties;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter loads;
+    private final Counter shared;
+
+    SingleFlight(String name, CoalescingProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.loads = registry.counter(REQUESTS_METRIC, "group", name, "outcome", "load");
+        this.shared = registry.counter(REQUESTS_METRIC, "group", name, "outcome", "shared");
+        Gauge.builder(RATIO_METRIC, this, SingleFlight::getRatio).tag("group", name).register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <E extends Exception> V execute(K key, Loader<V, E> loader) throws E {
+        if (!properties.isEnabled() || key == null) {
+            loads.increment();
+            return loader.load();
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            shared.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                // Every caller of a group passes the same kind of loader, so the cause is one this caller declares
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw (E) cause;
+            }
+        }
+
+        loads.increment();
+        try {
+            V value = loader.load();
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Later callers start a new load instead of joining the one in flight, if any
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    // For writes that cannot tell which keys they affect
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public long getLoads() {
+        return (long) loads.count();
+    }
+
+    public long getShared() {
+        return (long) shared.count();
+    }
+
+    public double getRatio() {
+        double total = loads.count() + shared.count();
+        return total == 0 ? 0 : shared.count() / total;
+    }
+}
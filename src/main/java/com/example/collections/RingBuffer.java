@@ -0,0 +1,79 @@
+package com.example.collections;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Lock-free multi-producer, multi-reader ring of the last `capacity` published events.
+ *
+ * A publisher claims the next sequence with one getAndIncrement and then stores the event in its slot, so
+ * publishing never waits for readers. Readers keep their own cursor (the next sequence they want) and poll with
+ * read(): a reader that falls more than capacity behind has been lapped and is told so, instead of holding the
+ * writers back.
+ */
+public class RingBuffer<E> {
+
+    public enum Status { READY, NOT_PUBLISHED, OVERRUN }
+
+    private final AtomicReferenceArray<Slot<E>> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    // Returns the sequence the event was published under
+    public long publish(E event) {
+        long sequence = next.getAndIncrement();
+        slots.set((int) (sequence & mask), new Slot<>(sequence, event));
+        return sequence;
+    }
+
+    // Sequence the next published event will get; everything below it has been claimed
+    public long head() {
+        return next.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public Status status(long sequence) {
+        if (head() - sequence > capacity()) {
+            return Status.OVERRUN;
+        }
+        Slot<E> slot = slots.get((int) (sequence & mask));
+        if (slot == null || slot.sequence < sequence) {
+            // claimed but not stored yet, or not claimed at all
+            return Status.NOT_PUBLISHED;
+        }
+        return slot.sequence == sequence ? Status.READY : Status.OVERRUN;
+    }
+
+    // The event at sequence, or null if it is not published yet or has already been overwritten (see status)
+    public E read(long sequence) {
+        Slot<E> slot = slots.get((int) (sequence & mask));
+        return slot != null && slot.sequence == sequence ? slot.event : null;
+    }
+
+    // Swaps the event at sequence, only if it is still the expected one (not overwritten or replaced in between)
+    public boolean replace(long sequence, E expected, E replacement) {
+        int index = (int) (sequence & mask);
+        Slot<E> slot = slots.get(index);
+        return slot != null && slot.sequence == sequence && slot.event == expected
+                && slots.compareAndSet(index, slot, new Slot<>(sequence, replacement));
+    }
+
+    private static final class Slot<E> {
+        final long sequence;
+        final E event;
+
+        Slot(long sequence, E event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.collections;
+
+import java.util.Arrays;
+
+/*
+ * Growable int array kept in ascending order without duplicates. Appending a value larger than the current
+ * maximum (the normal case for sequence-generated ids) is O(1) amortized. Not thread-safe.
+ */
+public class SortedIntList {
+
+    private int[] elements;
+    private int size;
+
+    public SortedIntList() {
+        this(4);
+    }
+
+    public SortedIntList(int capacity) {
+        elements = new int[Math.max(1, capacity)];
+    }
+
+    // Returns false if the value was already present
+    public boolean add(int value) {
+        int index = size == 0 || elements[size - 1] < value ? size : Arrays.binarySearch(elements, 0, size, value);
+        if (index >= 0 && index < size) {
+            return false;
+        }
+        int insertAt = index < 0 ? -index - 1 : index;
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        System.arraycopy(elements, insertAt, elements, insertAt + 1, size - insertAt);
+        elements[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    // Returns false if the value was not present
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(elements, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(elements, 0, size, value) >= 0;
+    }
+
+    public int get(int index) {
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Up to limit of the largest values below bound, largest first
+    public int[] descendingBelow(int bound, int limit) {
+        int end = Arrays.binarySearch(elements, 0, size, bound);
+        end = end < 0 ? -end - 1 : end;
+        int[] values = new int[Math.max(0, Math.min(limit, end))];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = elements[end - 1 - i];
+        }
+        return values;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -2,11 +2,15 @@ package com.example.controller;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.security.auth.login.LoginException;
 import javax.validation.Valid;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,18 +18,26 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.dto.ApiResponse;
+import com.example.dto.FeedPage;
+import com.example.dto.MessageFields;
 import com.example.dto.MessageText;
+import com.example.dto.VersionedMessage;
 import com.example.entity.Account;
 import com.example.entity.Message;
 import com.example.exception.AccountDoesNotExistException;
 import com.example.exception.MessageDoesNotExistException;
+import com.example.exception.MessageVersionConflictException;
 import com.example.exception.UsernameAlreadyExistsException;
 import com.example.service.AccountService;
 import com.example.service.MessageService;
+import com.example.stream.MessageStreamBroadcaster;
 
 // Designate class as a Controller, Spring Boot will look for beans in this class. RestController = Controller + ResponseBody.
 @RestController
@@ -35,11 +47,26 @@ public class SocialMediaController {
     
     private final AccountService accountService;    
     private final MessageService messageService;
+    private final MessageStreamBroadcaster messageStream;
+    private final int maxBatchIds;
+    private final int maxFeedAuthors;
+    private final int defaultFeedLimit;
+    private final int maxFeedLimit;
 
     // Constructor based DI    
-    public SocialMediaController(AccountService accountService, MessageService messageService){
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+                                 MessageStreamBroadcaster messageStream,
+                                 @Value("${app.messages.max-batch-ids:1000}") int maxBatchIds,
+                                 @Value("${app.feed.max-authors:100}") int maxFeedAuthors,
+                                 @Value("${app.feed.default-limit:20}") int defaultFeedLimit,
+                                 @Value("${app.feed.max-limit:200}") int maxFeedLimit){
         this.accountService = accountService;
         this.messageService = messageService;
+        this.messageStream = messageStream;
+        this.maxBatchIds = maxBatchIds;
+        this.maxFeedAuthors = maxFeedAuthors;
+        this.defaultFeedLimit = defaultFeedLimit;
+        this.maxFeedLimit = maxFeedLimit;
     }
 
 
@@ -53,6 +80,11 @@ public class SocialMediaController {
         }catch (UsernameAlreadyExistsException e) {            
             return ResponseEntity.status(HttpStatus.CONFLICT)
                             .build();
+        } catch (RejectedExecutionException e) {
+            // Password hashing pool is saturated
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "1")
+                            .build();
         }
         
         return ResponseEntity.status(HttpStatus.OK)
@@ -84,6 +116,11 @@ public class SocialMediaController {
         } catch (LoginException le){        
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                  .build();
+        } catch (RejectedExecutionException e) {
+            // Password hashing pool is saturated
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                 .header(HttpHeaders.RETRY_AFTER, "1")
+                                 .build();
         }
         
         return ResponseEntity.status(HttpStatus.OK)
@@ -112,19 +149,81 @@ public class SocialMediaController {
      */
 
      @GetMapping("messages")
-     public ResponseEntity<List<Message>> getAllMessages() {
+     public ResponseEntity<List<Message>> getAllMessages(@RequestParam(required = false) String fields) {
+        MessageFields selected = MessageFields.parse(fields);
+        if (selected == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
         return ResponseEntity.status(HttpStatus.OK)
-        .body(messageService.getAllMessages());
+        .body(messageService.getAllMessages(selected));
      }
 
+    /*
+     * ------> Retrieve Messages By Ids <------
+     * GET /messages?ids=3,1,2 answers in the requested order, with null in place of ids that do not exist
+     */
+
+    @GetMapping(value = "messages", params = "ids")
+    public ResponseEntity<List<Message>> getMessagesByIds(@RequestParam List<Integer> ids,
+                                                          @RequestParam(required = false) String fields) {
+        MessageFields selected = MessageFields.parse(fields);
+        if (ids.size() > maxBatchIds || selected == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                             .body(messageService.getMessagesByIds(ids, selected));
+    }
+
+    /*
+     * ------> Retrieve Recent Messages <------
+     * Newest first, at most app.messages.recent.capacity of them (also the default limit)
+     */
+
+    @GetMapping("messages/recent")
+    public ResponseEntity<List<Message>> getRecentMessages(@RequestParam(required = false) Integer limit,
+                                                           @RequestParam(required = false) String fields) {
+        if (limit != null && limit < 1 || MessageFields.parse(fields) == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                             .body(messageService.getRecentMessages(limit));
+    }
+
+    /*
+     * ------> Stream Message Changes (Server-Sent Events) <------
+     * Events: created / updated / deleted with the message as data, and resync when the client fell too far behind
+     */
+
+    @GetMapping(value = "messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessages(@RequestParam(required = false) Integer postedBy,
+                                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = messageStream.subscribe(postedBy, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                 .header(HttpHeaders.RETRY_AFTER, "1")
+                                 .build();
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(emitter);
+    }
+
     /*
      * ------> Retrieve Message By Id <------
      */
 
     @GetMapping("messages/{messageId}")
-    public ResponseEntity<Message> getMessageById(@PathVariable Integer messageId) {
+    public ResponseEntity<Message> getMessageById(@PathVariable Integer messageId,
+                                                  @RequestParam(required = false) String fields) {
+        if (MessageFields.parse(fields) == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        VersionedMessage message = messageService.getMessageById(messageId);
+        if (message == null) {
+            return ResponseEntity.status(HttpStatus.OK).build();
+        }
+        // ETag carries the message version so clients can send a conditional PATCH with If-Match
         return ResponseEntity.status(HttpStatus.OK)
-        .body(messageService.getMessageById(messageId));
+        .headers(eTagHeaders(message.getVersion()))
+        .body(message.getMessage());
     }
 
     /*
@@ -146,14 +245,71 @@ public class SocialMediaController {
      */
 
     @PatchMapping("messages/{messageId}")
-    public ResponseEntity<Integer> updateMessageById(@PathVariable Integer messageId, @Valid @RequestBody MessageText messageText) {        
+    public ResponseEntity<Integer> updateMessageById(@PathVariable Integer messageId, @Valid @RequestBody MessageText messageText,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = fromETag(ifMatch);
+            if (expectedVersion == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+        }
+
+        Long newVersion;
         try {
-            messageService.updateMessageById(messageId, messageText);
+            newVersion = messageService.updateMessageText(messageId, messageText, expectedVersion);
         } catch (MessageDoesNotExistException e) {        
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        } catch (MessageVersionConflictException e) {
+            // 412 when the client's If-Match is stale, 409 when the server ran out of retries
+            return ResponseEntity.status(expectedVersion != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT)
+                                 .headers(eTagHeaders(e.getCurrentVersion()))
+                                 .build();
         }
         
-        return ResponseEntity.status(HttpStatus.OK).body(1);
+        return ResponseEntity.status(HttpStatus.OK).headers(eTagHeaders(newVersion)).body(1);
+    }
+
+    // The version can be null when the message was deleted concurrently, then no ETag is sent
+    private static HttpHeaders eTagHeaders(Long version) {
+        HttpHeaders headers = new HttpHeaders();
+        if (version != null) {
+            headers.setETag("\"" + version + "\"");
+        }
+        return headers;
+    }
+
+    // Accepts "3", "\"3\"" and W/"3"; anything else (including a list of tags) is treated as not matching
+    private static Long fromETag(String eTag) {
+        String value = eTag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /*
+     * ------> Multi-Author Feed <------
+     * GET /feed?authors=1,2,3&limit=20 for the first page, then &before=<nextCursor> for the following ones
+     */
+
+    @GetMapping("feed")
+    public ResponseEntity<FeedPage> getFeed(@RequestParam List<Integer> authors,
+                                            @RequestParam(required = false) Integer before,
+                                            @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultFeedLimit : limit;
+        if (authors.size() > maxFeedAuthors || pageSize < 1 || pageSize > maxFeedLimit) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                             .body(messageService.getFeed(authors, before, pageSize));
     }
 
     /*
@@ -161,10 +317,15 @@ public class SocialMediaController {
      */
 
     @GetMapping("accounts/{accountId}/messages")
-    public ResponseEntity<List<Message>> getMessagesByUser(@PathVariable Integer accountId) {
+    public ResponseEntity<List<Message>> getMessagesByUser(@PathVariable Integer accountId,
+                                                           @RequestParam(required = false) String fields) {
+        MessageFields selected = MessageFields.parse(fields);
+        if (selected == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
         List<Message> messageList = new ArrayList<>();
         try {
-            messageList = messageService.findMessagesByAccountId(accountId);
+            messageList = messageService.findMessagesByAccountId(accountId, selected);
         } catch (AccountDoesNotExistException e) {
             return ResponseEntity.status(HttpStatus.OK).body(messageList);
         }
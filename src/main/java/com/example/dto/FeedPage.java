@@ -0,0 +1,20 @@
+package com.example.dto;
+
+import java.util.List;
+
+import com.example.entity.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+@Getter @Setter 
+@NoArgsConstructor 
+@AllArgsConstructor
+// One page of a multi-author feed, newest first. nextCursor is the before= of the next page, null on the last page
+public class FeedPage {
+    private List<Message> messages;
+    private Integer nextCursor;
+}
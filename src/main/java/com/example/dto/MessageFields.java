@@ -0,0 +1,112 @@
+package com.example.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.example.entity.Message;
+
+// Sparse fieldset of a message response (?fields=messageId,messageText), also the columns the stores select
+public final class MessageFields {
+
+    // Name of the Jackson property filter on Message that drops the fields not asked for
+    public static final String FILTER = "messageFields";
+
+    public enum Field {
+        MESSAGE_ID("messageId"), POSTED_BY("postedBy"), MESSAGE_TEXT("messageText"), TIME_POSTED_EPOCH("timePostedEpoch");
+
+        // JSON property name, also the column name
+        private final String property;
+
+        Field(String property) {
+            this.property = property;
+        }
+
+        public String property() {
+            return property;
+        }
+
+        static Field forProperty(String property) {
+            for (Field field : values()) {
+                if (field.property.equals(property)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static final MessageFields ALL = new MessageFields(EnumSet.allOf(Field.class));
+
+    private final EnumSet<Field> fields;
+
+    private MessageFields(EnumSet<Field> fields) {
+        this.fields = fields;
+    }
+
+    // ALL for a missing or blank parameter, null if it names a field that does not exist
+    public static MessageFields parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        EnumSet<Field> selected = EnumSet.noneOf(Field.class);
+        for (String name : fields.split(",")) {
+            Field field = Field.forProperty(name.trim());
+            if (field == null) {
+                return null;
+            }
+            selected.add(field);
+        }
+        return selected.size() == Field.values().length ? ALL : new MessageFields(selected);
+    }
+
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    public boolean contains(Field field) {
+        return fields.contains(field);
+    }
+
+    public Set<String> names() {
+        Set<String> names = new LinkedHashSet<>();
+        fields.forEach(field -> names.add(field.property()));
+        return Collections.unmodifiableSet(names);
+    }
+
+    // Select list for the fields; messageId is always selected since results are ordered and matched by it
+    public String columns() {
+        StringBuilder columns = new StringBuilder(Field.MESSAGE_ID.property());
+        for (Field field : fields) {
+            if (field != Field.MESSAGE_ID) {
+                columns.append(", ").append(field.property());
+            }
+        }
+        return columns.toString();
+    }
+
+    // Copy with the other fields left null (messageId is kept, see columns())
+    public Message project(Message message) {
+        if (isAll() || message == null) {
+            return message;
+        }
+        return new Message(message.getMessageId(),
+                contains(Field.POSTED_BY) ? message.getPostedBy() : null,
+                contains(Field.MESSAGE_TEXT) ? message.getMessageText() : null,
+                contains(Field.TIME_POSTED_EPOCH) ? message.getTimePostedEpoch() : null);
+    }
+
+    public List<Message> project(List<Message> messages) {
+        if (isAll()) {
+            return messages;
+        }
+        List<Message> projected = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            projected.add(project(message));
+        }
+        return projected;
+    }
+}
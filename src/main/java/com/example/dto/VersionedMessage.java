@@ -0,0 +1,18 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+@Getter @Setter 
+@NoArgsConstructor 
+@AllArgsConstructor
+// A message together with the optimistic concurrency version of the same read, for the ETag of GET /messages/{id}
+public class VersionedMessage {
+    private Message message;
+    private long version;
+}
@@ -0,0 +1,15 @@
+package com.example.exception;
+
+// Thrown when a versioned message update loses the race, either against the client's If-Match or after all retries
+public class MessageVersionConflictException extends Exception{
+
+    private final Long currentVersion;
+
+    public MessageVersionConflictException(Long currentVersion) {
+        this.currentVersion = currentVersion;
+    }
+
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+}
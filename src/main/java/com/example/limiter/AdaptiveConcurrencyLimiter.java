@@ -0,0 +1,95 @@
+package com.example.limiter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Gradient based concurrency limit (the same idea as Netflix's Gradient2 limiter).
+ *
+ * A long-term EWMA of request latency is the "no queueing" baseline, each new sample is the short-term latency.
+ * Baselines are kept per route, because routes differ by orders of magnitude (a login spends ~50 ms hashing, a
+ * message lookup well under one) and a slow route must not look like congestion of a fast one. While latency stays
+ * within tolerance * baseline the gradient is 1 and the limit grows by sqrt(limit) headroom; when H2 or anything
+ * else slows down, short latency rises above the baseline and the limit shrinks in proportion (never by more than
+ * half per update). Above the initial limit it only grows while at least half of it is in use, so an idle server
+ * does not drift up to the maximum, but a limit cut below the initial one grows back at any utilisation.
+ *
+ * Acquire is a CAS on the in-flight counter; the limit itself is updated under this object's monitor, which is
+ * only held for a few arithmetic operations per completed request.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority { READ, LOGIN, WRITE }
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LimiterProperties properties;
+
+    private volatile double limit;
+    // Route -> long-term latency baseline; only touched under this object's monitor
+    private final Map<String, double[]> longRttNanos = new HashMap<>();
+
+    public AdaptiveConcurrencyLimiter(LimiterProperties properties) {
+        this.properties = properties;
+        this.limit = properties.getInitialLimit();
+    }
+
+    // Reserve a slot, or return false when the request should be shed
+    public boolean tryAcquire(Priority priority) {
+        double share = priority == Priority.WRITE ? properties.getWriteShare() : 1.0;
+        int cap = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= cap) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Release a slot taken by tryAcquire and feed the latency observed on the route into the limit
+    public void release(String route, long rttNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        update(route, rttNanos, inFlightAtCompletion);
+    }
+
+    private synchronized void update(String route, long rttNanos, int inFlightAtCompletion) {
+        double[] baseline = longRttNanos.computeIfAbsent(route, key -> new double[1]);
+        if (baseline[0] == 0) {
+            baseline[0] = rttNanos;
+            return;
+        }
+        double longWeight = 2.0 / (properties.getLongWindow() + 1);
+        double longRtt = baseline[0] * (1 - longWeight) + rttNanos * longWeight;
+
+        // After a long slow period the baseline itself drifts up; pull it back so the limit can recover
+        if (longRtt > 2 * rttNanos) {
+            longRtt *= 0.95;
+        }
+        baseline[0] = longRtt;
+
+        double current = limit;
+        if (inFlightAtCompletion < current / 2 && rttNanos <= properties.getTolerance() * longRtt
+                && current >= properties.getInitialLimit()) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longRtt / rttNanos));
+        double estimate = current * gradient + Math.sqrt(current);
+        double smoothed = current * (1 - properties.getSmoothing()) + estimate * properties.getSmoothing();
+        // Lightly used, the limit only wins back what congestion took
+        double ceiling = inFlightAtCompletion < current / 2 ? Math.max(current, properties.getInitialLimit())
+                : properties.getMaxLimit();
+        limit = Math.max(properties.getMinLimit(), Math.min(Math.min(ceiling, properties.getMaxLimit()), smoothed));
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
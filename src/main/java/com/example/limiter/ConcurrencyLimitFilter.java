@@ -0,0 +1,103 @@
+package com.example.limiter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.example.admin.AdminController;
+import com.example.limiter.AdaptiveConcurrencyLimiter.Priority;
+import com.example.stream.MessageStreamBroadcaster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Runs ahead of every other application filter: a request that cannot get a slot is answered with 503 and
+ * Retry-After straight away instead of waiting in Tomcat's queue. Actuator endpoints are never limited so health
+ * checks keep working while the app is shedding load, and neither are the admin bulk endpoints, which run for
+ * minutes on purpose. The SSE message stream is not limited either: it returns as
+ * soon as the async subscription is set up, which would only feed meaningless round trip times into the limiter,
+ * and it caps its own subscriber count.
+ *
+ * Latency is fed back per route (method and handler pattern), see AdaptiveConcurrencyLimiter.
+ *
+ * Metrics: limiter.limit, limiter.inflight and limiter.rejected{priority}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final LimiterProperties properties;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    public ConcurrencyLimitFilter(LimiterProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.limiter = new AdaptiveConcurrencyLimiter(properties);
+        Gauge.builder("limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).register(registry);
+        Gauge.builder("limiter.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight).register(registry);
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, registry.counter("limiter.rejected", "priority", priority.name().toLowerCase()));
+        }
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !properties.isEnabled() || path.startsWith("/actuator") || path.startsWith(AdminController.PATH_PREFIX)
+                || MessageStreamBroadcaster.STREAM_PATH.equals(path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Priority priority = priorityOf(request);
+        if (!limiter.tryAcquire(priority)) {
+            rejected.get(priority).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limiter.release(routeOf(request), System.nanoTime() - start);
+        }
+    }
+
+    // Known once the request was dispatched; anything that did not match a handler shares one baseline
+    static String routeOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "unmatched" : request.getMethod() + " " + pattern;
+    }
+
+    static Priority priorityOf(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return Priority.READ;
+        }
+        if ("POST".equals(method) && request.getRequestURI().equals("/login")) {
+            return Priority.LOGIN;
+        }
+        return Priority.WRITE;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.limiter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.limiter")
+public class LimiterProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 50;
+    private int minLimit = 4;
+    // No point going above Tomcat's worker count, requests beyond it would only queue
+    private int maxLimit = 200;
+
+    // How much the short-term latency may exceed the long-term baseline before the limit shrinks
+    private double tolerance = 1.5;
+    // Weight of each new limit estimate, lower is smoother
+    private double smoothing = 0.2;
+    // Number of samples the long-term latency baseline averages over
+    private int longWindow = 600;
+
+    // Writes may only use this share of the limit, so they are shed before reads and logins
+    private double writeShare = 0.8;
+
+    private int retryAfterSeconds = 1;
+}
@@ -0,0 +1,26 @@
+package com.example.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+// GET /actuator/contention?limit=N -> the N messages with the most update conflicts
+@Component
+@Endpoint(id = "contention")
+public class ContentionEndpoint {
+
+    private final ContentionMetrics contentionMetrics;
+
+    public ContentionEndpoint(ContentionMetrics contentionMetrics) {
+        this.contentionMetrics = contentionMetrics;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> hottest(@Nullable Integer limit) {
+        return contentionMetrics.hottest(limit == null ? 20 : limit);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.metrics;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Conflict and retry counters for versioned message updates.
+ *
+ * Totals go to Micrometer. Per-message counts would be far too high-cardinality for meter tags, so they are kept
+ * here instead and served by the "contention" actuator endpoint to find hot rows. Tracking is capped at
+ * app.metrics.contention.max-tracked messages; anything beyond that only shows up in the totals.
+ */
+@Component
+public class ContentionMetrics {
+
+    private final Map<Integer, MessageContention> perMessage = new ConcurrentHashMap<>();
+    private final int maxTracked;
+    private final Counter conflicts;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public ContentionMetrics(MeterRegistry registry,
+                             @Value("${app.metrics.contention.max-tracked:10000}") int maxTracked) {
+        this.maxTracked = maxTracked;
+        this.conflicts = registry.counter("messages.update.conflicts");
+        this.retries = registry.counter("messages.update.retries");
+        this.exhausted = registry.counter("messages.update.retries.exhausted");
+    }
+
+    public void recordConflict(Integer messageId) {
+        conflicts.increment();
+        MessageContention contention = track(messageId);
+        if (contention != null) {
+            contention.conflicts.increment();
+        }
+    }
+
+    public void recordRetry(Integer messageId) {
+        retries.increment();
+        MessageContention contention = track(messageId);
+        if (contention != null) {
+            contention.retries.increment();
+        }
+    }
+
+    public void recordExhausted() {
+        exhausted.increment();
+    }
+
+    public long getConflicts(Integer messageId) {
+        MessageContention contention = perMessage.get(messageId);
+        return contention == null ? 0 : contention.conflicts.sum();
+    }
+
+    public long getRetries(Integer messageId) {
+        MessageContention contention = perMessage.get(messageId);
+        return contention == null ? 0 : contention.retries.sum();
+    }
+
+    /*
+     * The most contended messages, hottest first.
+     */
+    public List<Map<String, Object>> hottest(int limit) {
+        return perMessage.entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<Integer, MessageContention> entry) -> entry.getValue().conflicts.sum()).reversed())
+                .limit(limit)
+                .map(entry -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("messageId", entry.getKey());
+                    row.put("conflicts", entry.getValue().conflicts.sum());
+                    row.put("retries", entry.getValue().retries.sum());
+                    return row;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private MessageContention track(Integer messageId) {
+        MessageContention contention = perMessage.get(messageId);
+        if (contention == null && perMessage.size() < maxTracked) {
+            contention = perMessage.computeIfAbsent(messageId, id -> new MessageContention());
+        }
+        return contention;
+    }
+
+    private static class MessageContention {
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+    }
+}
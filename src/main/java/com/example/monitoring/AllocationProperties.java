@@ -0,0 +1,35 @@
+package com.example.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.allocation")
+// Allocation budgets are keyed by controller method name, in bytes, e.g. app.allocation.budgets.getMessageById=65536
+public class AllocationProperties {
+
+    // Sample per-thread allocated bytes around every controller request
+    private boolean enabled = true;
+
+    // Return an X-Allocated-Bytes response header (requires buffering the response body)
+    private boolean debugHeader = false;
+
+    // Test mode: check every request against its budget and keep the ones that went over
+    private boolean enforceBudgets = false;
+
+    // Budget for routes without their own entry, negative means no budget
+    private long defaultBudget = -1;
+
+    private Map<String, Long> budgets = new HashMap<>();
+
+    public long budgetFor(String handlerName) {
+        return budgets.getOrDefault(handlerName, defaultBudget);
+    }
+}
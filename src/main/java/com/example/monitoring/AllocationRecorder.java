@@ -0,0 +1,85 @@
+package com.example.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Bytes allocated per request, from the JVM's per-thread allocation counter (HotSpot's
+ * com.sun.management.ThreadMXBean). A request is served start to finish on one Tomcat thread, so the difference
+ * between two samples taken by RequestTraceFilter is what that request allocated, TLAB refills included.
+ *
+ * Every route gets a "http.server.requests.allocation" histogram tagged with method, uri and handler, so GC
+ * pressure can be traced to the routes causing it. With app.allocation.enforce-budgets, requests over their
+ * route's budget are logged as errors and kept in getBudgetViolations() for tests to fail on.
+ */
+@Component
+public class AllocationRecorder {
+
+    public static final String ALLOCATION_METRIC = "http.server.requests.allocation";
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationRecorder.class);
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final AllocationProperties properties;
+    private final MeterRegistry registry;
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final List<String> budgetViolations = new CopyOnWriteArrayList<>();
+
+    public AllocationRecorder(AllocationProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    // Bytes allocated so far by the calling thread, or -1 if sampling is off or the JVM cannot tell
+    public long currentThreadAllocatedBytes() {
+        if (!properties.isEnabled() || THREADS == null) {
+            return -1;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void record(String method, String route, String handlerName, long bytes) {
+        String key = method + ' ' + route;
+        summaries.computeIfAbsent(key, k -> DistributionSummary.builder(ALLOCATION_METRIC)
+                .baseUnit("bytes")
+                .description("Bytes allocated on the request thread while serving the request")
+                .tags("method", method, "uri", route, "handler", handlerName)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(bytes);
+
+        long budget = properties.budgetFor(handlerName);
+        if (properties.isEnforceBudgets() && budget >= 0 && bytes > budget) {
+            String violation = key + " (" + handlerName + ") allocated " + bytes + " bytes, over its budget of " + budget;
+            log.error(violation);
+            budgetViolations.add(violation);
+        }
+    }
+
+    public List<String> getBudgetViolations() {
+        return budgetViolations;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        hotspot.setThreadAllocatedMemoryEnabled(true);
+        return hotspot;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * An in-memory lookup that either answered from memory (hit) or had to go to the database. Emitted by the caller
+ * of the cache, which knows what a miss costs, e.g.
+ *
+ *     CacheLookupEvent event = new CacheLookupEvent();
+ *     event.begin();
+ *     ... lookup ...
+ *     event.commit("authorIndex", accountId, hit);
+ */
+@Name("com.example.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Social Media App", "Cache"})
+@Description("An in-memory cache or index lookup and whether the database was needed")
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public long key;
+
+    @Label("Hit")
+    public boolean hit;
+
+    public void commit(String cache, long key, boolean hit) {
+        if (shouldCommit()) {
+            this.cache = cache;
+            this.key = key;
+            this.hit = hit;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.monitoring;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.example.dto.VersionedMessage;
+import com.example.entity.Account;
+import com.example.entity.Message;
+
+/*
+ * Emits ServiceOperationEvent and RepositoryOperationEvent for Java Flight Recorder. The events carry the thread
+ * and timestamps like every JFR event, so a recording lines slow calls up with the GC pauses, safepoints and lock
+ * contention that happened at the same time on the same thread.
+ *
+ * When no recording has the events enabled, isEnabled() is a constant false once compiled and the unused event
+ * objects are scalar replaced, so the cost is the aspect call itself. Route, entity id and row count are only
+ * worked out for events that will actually be committed (over the recording's threshold).
+ */
+@Aspect
+@Component
+public class FlightRecorderAspect {
+
+    @Around("execution(public * com.example.service.MessageService.*(..)) "
+            + "|| execution(public * com.example.service.AccountService.*(..))")
+    public Object recordService(ProceedingJoinPoint joinPoint) throws Throwable {
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        event.begin();
+        Object result = null;
+        Throwable failure = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.service = joinPoint.getSignature().getDeclaringType().getSimpleName();
+                event.operation = joinPoint.getSignature().getName();
+                event.route = currentRoute();
+                event.entityId = entityId(joinPoint.getArgs(), result);
+                event.rowCount = failure == null ? rowCount(result) : 0;
+                event.exception = failure == null ? null : failure.getClass().getSimpleName();
+                event.commit();
+            }
+        }
+    }
+
+    @Around("this(org.springframework.data.repository.Repository) "
+            + "|| execution(public * com.example.repository.MessageStore+.*(..))")
+    public Object recordRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        RepositoryOperationEvent event = new RepositoryOperationEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        event.begin();
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.repository = repositoryName(joinPoint.getThis());
+                event.operation = joinPoint.getSignature().getName();
+                event.entityId = entityId(joinPoint.getArgs(), result);
+                event.rowCount = rowCount(result);
+                event.commit();
+            }
+        }
+    }
+
+    // MessageRepository rather than the proxy class or CrudRepository, JpaMessageStore rather than its CGLIB subclass
+    private static String repositoryName(Object repository) {
+        for (Class<?> type : AopProxyUtils.proxiedUserInterfaces(repository)) {
+            if (Repository.class.isAssignableFrom(type) && type != Repository.class) {
+                return type.getSimpleName();
+            }
+        }
+        return AopUtils.getTargetClass(repository).getSimpleName();
+    }
+
+    private static String currentRoute() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+
+    // The id argument if there is one, otherwise the id of the entity that came back
+    private static long entityId(Object[] args, Object result) {
+        if (args.length > 0 && args[0] instanceof Integer) {
+            return (Integer) args[0];
+        }
+        Object entity = result instanceof Optional ? ((Optional<?>) result).orElse(null) : result;
+        if (entity instanceof Message && ((Message) entity).getMessageId() != null) {
+            return ((Message) entity).getMessageId();
+        }
+        if (entity instanceof Account && ((Account) entity).getAccountId() != null) {
+            return ((Account) entity).getAccountId();
+        }
+        if (args.length > 0 && args[0] instanceof Message && ((Message) args[0]).getMessageId() != null) {
+            return ((Message) args[0]).getMessageId();
+        }
+        return -1;
+    }
+
+    // Entities returned, or rows changed for the calls that return a count
+    private static int rowCount(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return result instanceof Message || result instanceof VersionedMessage || result instanceof Account ? 1 : 0;
+    }
+}
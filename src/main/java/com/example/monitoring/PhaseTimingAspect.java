@@ -0,0 +1,58 @@
+package com.example.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/*
+ * Attributes time spent in the controller, the services and the Spring Data repositories to the current
+ * RequestTrace. Only the outermost call of each layer is timed, so a service calling another service (or a
+ * repository calling itself) is not counted twice. Outside of a request this is a single ThreadLocal lookup.
+ */
+@Aspect
+@Component
+public class PhaseTimingAspect {
+
+    @Around("within(com.example.controller..*)")
+    public Object timeHandler(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            trace.recordHandler(start, System.nanoTime());
+        }
+    }
+
+    @Around("within(com.example.service..*)")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null || !trace.enterService()) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            trace.exitService(System.nanoTime() - start);
+        }
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null || !trace.enterRepository()) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            trace.exitRepository(System.nanoTime() - start);
+        }
+    }
+}
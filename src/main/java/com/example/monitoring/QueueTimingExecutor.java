@@ -0,0 +1,52 @@
+package com.example.monitoring;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tomcat.util.threads.TaskQueue;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+
+/*
+ * Drop-in replacement for Tomcat's own request executor (same TaskQueue semantics: grow to maxThreads before
+ * queueing) that remembers how long each socket task sat in the queue before a worker picked it up.
+ */
+public class QueueTimingExecutor extends ThreadPoolExecutor {
+
+    private static final ThreadLocal<long[]> QUEUE_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    public QueueTimingExecutor(String namePrefix, int minSpareThreads, int maxThreads) {
+        super(minSpareThreads, maxThreads, 60, TimeUnit.SECONDS, new TaskQueue(),
+                new TaskThreadFactory(namePrefix, true, Thread.NORM_PRIORITY));
+        ((TaskQueue) getQueue()).setParent(this);
+    }
+
+    // Queue wait of the socket task this worker thread is running, reported once per dispatch
+    public static long takeQueueNanos() {
+        long[] slot = QUEUE_NANOS.get();
+        long nanos = slot[0];
+        slot[0] = 0;
+        return nanos;
+    }
+
+    // The endpoints hand socket tasks to execute(Runnable); the timed variant is deprecated and not wrapped
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new QueuedTask(command, System.nanoTime()));
+    }
+
+    private static class QueuedTask implements Runnable {
+        private final Runnable task;
+        private final long enqueuedNanos;
+
+        QueuedTask(Runnable task, long enqueuedNanos) {
+            this.task = task;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        @Override
+        public void run() {
+            QUEUE_NANOS.get()[0] = System.nanoTime() - enqueuedNanos;
+            task.run();
+        }
+    }
+}
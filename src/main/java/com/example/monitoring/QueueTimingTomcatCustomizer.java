@@ -0,0 +1,44 @@
+package com.example.monitoring;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/*
+ * Installs QueueTimingExecutor on every Tomcat connector. Runs after Boot's own Tomcat customizer, so the
+ * server.tomcat.threads.* settings are already applied to the protocol when they are copied over here.
+ * Tomcat does not shut down executors it did not create itself, so that happens on context close.
+ */
+@Component
+public class QueueTimingTomcatCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>, DisposableBean {
+
+    private final List<QueueTimingExecutor> executors = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        factory.addConnectorCustomizers(this::installExecutor);
+    }
+
+    private void installExecutor(Connector connector) {
+        ProtocolHandler handler = connector.getProtocolHandler();
+        if (handler instanceof AbstractProtocol) {
+            AbstractProtocol<?> protocol = (AbstractProtocol<?>) handler;
+            QueueTimingExecutor executor = new QueueTimingExecutor("http-nio-" + connector.getPort() + "-exec-",
+                    protocol.getMinSpareThreads(), protocol.getMaxThreads());
+            protocol.setExecutor(executor);
+            executors.add(executor);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executors.forEach(QueueTimingExecutor::shutdownNow);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One MessageStore or Spring Data repository call, committed by FlightRecorderAspect
+@Name("com.example.RepositoryOperation")
+@Label("Repository Operation")
+@Category({"Social Media App", "Repository"})
+@Description("A MessageStore or Spring Data repository call")
+@StackTrace(false)
+public class RepositoryOperationEvent extends Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Entity ID")
+    @Description("Message or account id the call was about, -1 if there was none")
+    public long entityId;
+
+    @Label("Row Count")
+    @Description("Entities returned or rows changed")
+    public int rowCount;
+}
@@ -0,0 +1,126 @@
+package com.example.monitoring;
+
+/*
+ * Per-request measurements, bound to the request thread by RequestTraceFilter. Everything is a plain field on
+ * purpose: a trace is only ever touched by the thread serving its request, so no synchronization is needed. Work
+ * the request hands to other threads records into helper traces of its own (see forHelper), which the request
+ * thread adds to its trace once it has joined the results.
+ */
+public class RequestTrace {
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos;
+    private final long queueNanos;
+
+    private int statements;
+    private long statementNanos;
+
+    private long handlerNanos;
+    private long handlerEndNanos;
+    private long serviceNanos;
+    private int serviceDepth;
+    private long repositoryNanos;
+    private int repositoryDepth;
+
+    private RequestTrace(long startNanos, long queueNanos) {
+        this.startNanos = startNanos;
+        this.queueNanos = queueNanos;
+    }
+
+    public static RequestTrace begin() {
+        RequestTrace trace = new RequestTrace(System.nanoTime(), QueueTimingExecutor.takeQueueNanos());
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    // The trace of the request being served on this thread, or null outside of a request
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    // A blank trace for a helper thread to bind while it works for the current request; null outside of a request
+    public static RequestTrace forHelper() {
+        return CURRENT.get() == null ? null : new RequestTrace(System.nanoTime(), 0);
+    }
+
+    // Binds a helper trace to this (helper) thread until end(); null binds nothing
+    public static void bind(RequestTrace trace) {
+        if (trace != null) {
+            CURRENT.set(trace);
+        }
+    }
+
+    // Adds the statements a helper ran, on the request thread and only after the helper's work was joined
+    public void include(RequestTrace helper) {
+        if (helper != null) {
+            statements += helper.statements;
+            statementNanos += helper.statementNanos;
+        }
+    }
+
+    void recordStatement(long nanos) {
+        statements++;
+        statementNanos += nanos;
+    }
+
+    void recordHandler(long start, long end) {
+        handlerNanos += end - start;
+        handlerEndNanos = end;
+    }
+
+    boolean enterService() {
+        return serviceDepth++ == 0;
+    }
+
+    void exitService(long nanos) {
+        serviceDepth--;
+        serviceNanos += nanos;
+    }
+
+    boolean enterRepository() {
+        return repositoryDepth++ == 0;
+    }
+
+    void exitRepository(long nanos) {
+        repositoryDepth--;
+        repositoryNanos += nanos;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getQueueNanos() {
+        return queueNanos;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    public long getHandlerNanos() {
+        return handlerNanos;
+    }
+
+    public long getServiceNanos() {
+        return serviceNanos;
+    }
+
+    public long getRepositoryNanos() {
+        return repositoryNanos;
+    }
+
+    // Time from the controller returning until the response body was fully written, 0 if no handler ran
+    public long getSerializationNanos(long endNanos) {
+        return handlerEndNanos == 0 ? 0 : endNanos - handlerEndNanos;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.monitoring;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.admin.AdminController;
+import com.example.stream.MessageStreamBroadcaster;
+
+/*
+ * Opens a RequestTrace for every request and, once the request is done:
+ *  - checks it against the route's SQL statement budget
+ *  - records the bytes allocated while serving it with AllocationRecorder
+ *  - adds the Server-Timing phase breakdown and, in debug mode, the SQL statement and allocation headers
+ *  - writes a sampled one-line logfmt record to the "request.timing" logger
+ * Headers can only be added after the body has been written if the body is buffered, so the response is wrapped
+ * only when one of the header features applies to the request (Server-Timing only on its sampled share), and never
+ * for the SSE message stream or the admin bulk endpoints, whose output has to reach the client as it is written.
+ */
+@Component
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    public static final String STATEMENT_TIME_HEADER = "X-SQL-Time-Micros";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+    public static final String ALLOCATED_BYTES_HEADER = "X-Allocated-Bytes";
+
+    private static final Logger log = LoggerFactory.getLogger(RequestTraceFilter.class);
+    private static final Logger timingLog = LoggerFactory.getLogger("request.timing");
+
+    private final SqlStatementProperties sqlProperties;
+    private final TimingProperties timingProperties;
+    private final AllocationProperties allocationProperties;
+    private final AllocationRecorder allocationRecorder;
+
+    public RequestTraceFilter(SqlStatementProperties sqlProperties, TimingProperties timingProperties,
+                              AllocationProperties allocationProperties, AllocationRecorder allocationRecorder) {
+        this.sqlProperties = sqlProperties;
+        this.timingProperties = timingProperties;
+        this.allocationProperties = allocationProperties;
+        this.allocationRecorder = allocationRecorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long allocatedBefore = allocationRecorder.currentThreadAllocatedBytes();
+        RequestTrace trace = RequestTrace.begin();
+        boolean serverTiming = timingProperties.isServerTimingHeader() && sampled(timingProperties.getServerTimingSampleRate());
+        boolean buffer = (sqlProperties.isDebugHeaders() || serverTiming || allocationProperties.isDebugHeader())
+                && !isStreaming(request);
+        ContentCachingResponseWrapper bufferedResponse = buffer ? new ContentCachingResponseWrapper(response) : null;
+        try {
+            filterChain.doFilter(request, bufferedResponse != null ? bufferedResponse : response);
+        } finally {
+            long endNanos = System.nanoTime();
+            RequestTrace.end();
+            String handlerName = handlerName(request);
+            checkBudget(request, handlerName, trace);
+            long allocated = allocatedBefore < 0 || handlerName == null ? -1
+                    : allocationRecorder.currentThreadAllocatedBytes() - allocatedBefore;
+            if (allocated >= 0) {
+                allocationRecorder.record(request.getMethod(),
+                        String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE)),
+                        handlerName, allocated);
+            }
+            if (sampled(timingProperties.getLogSampleRate())) {
+                logTiming(request, response.getStatus(), handlerName, trace, endNanos);
+            }
+            if (bufferedResponse != null) {
+                if (sqlProperties.isDebugHeaders()) {
+                    bufferedResponse.setHeader(STATEMENTS_HEADER, String.valueOf(trace.getStatements()));
+                    bufferedResponse.setHeader(STATEMENT_TIME_HEADER, String.valueOf(trace.getStatementNanos() / 1000));
+                }
+                if (allocationProperties.isDebugHeader() && allocated >= 0) {
+                    bufferedResponse.setHeader(ALLOCATED_BYTES_HEADER, String.valueOf(allocated));
+                }
+                if (serverTiming) {
+                    bufferedResponse.setHeader(SERVER_TIMING_HEADER, serverTiming(trace, endNanos));
+                }
+                bufferedResponse.copyBodyToResponse();
+            }
+        }
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private static boolean isStreaming(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return MessageStreamBroadcaster.STREAM_PATH.equals(path) || path.startsWith(AdminController.PATH_PREFIX);
+    }
+
+    private static String handlerName(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        return handler instanceof HandlerMethod ? ((HandlerMethod) handler).getMethod().getName() : null;
+    }
+
+    private void checkBudget(HttpServletRequest request, String handlerName, RequestTrace trace) {
+        if (handlerName == null) {
+            return;
+        }
+        int budget = sqlProperties.budgetFor(handlerName);
+        if (budget >= 0 && trace.getStatements() > budget) {
+            log.warn("{} {} ({}) ran {} SQL statements in {} us, over its budget of {}", request.getMethod(),
+                    request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), handlerName,
+                    trace.getStatements(), trace.getStatementNanos() / 1000, budget);
+        }
+    }
+
+    private static String serverTiming(RequestTrace trace, long endNanos) {
+        return "queue;dur=" + millis(trace.getQueueNanos())
+                + ", handler;dur=" + millis(trace.getHandlerNanos())
+                + ", service;dur=" + millis(trace.getServiceNanos())
+                + ", repository;dur=" + millis(trace.getRepositoryNanos())
+                + ", db;dur=" + millis(trace.getStatementNanos())
+                + ", serialization;dur=" + millis(trace.getSerializationNanos(endNanos))
+                + ", total;dur=" + millis(endNanos - trace.getStartNanos());
+    }
+
+    private static void logTiming(HttpServletRequest request, int status, String handlerName, RequestTrace trace, long endNanos) {
+        timingLog.info("method={} route=\"{}\" handler={} status={} total_us={} queue_us={} handler_us={} service_us={} "
+                        + "repository_us={} db_us={} statements={} serialization_us={}",
+                request.getMethod(), request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), handlerName,
+                status, (endNanos - trace.getStartNanos()) / 1000, trace.getQueueNanos() / 1000,
+                trace.getHandlerNanos() / 1000, trace.getServiceNanos() / 1000, trace.getRepositoryNanos() / 1000,
+                trace.getStatementNanos() / 1000, trace.getStatements(), trace.getSerializationNanos(endNanos) / 1000);
+    }
+
+    // Milliseconds with microsecond precision, without the cost of String.format on every request
+    private static String millis(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        long fraction = micros % 1000;
+        return (micros / 1000) + (fraction < 10 ? ".00" : fraction < 100 ? ".0" : ".") + fraction;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One MessageService / AccountService call, committed by FlightRecorderAspect
+@Name("com.example.ServiceOperation")
+@Label("Service Operation")
+@Category({"Social Media App", "Service"})
+@Description("A MessageService or AccountService call")
+@StackTrace(false)
+public class ServiceOperationEvent extends Event {
+
+    @Label("Service")
+    public String service;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Route")
+    @Description("HTTP method and route pattern of the request the call was made for, null outside of a request")
+    public String route;
+
+    @Label("Entity ID")
+    @Description("Message or account id the call was about, -1 if there was none")
+    public long entityId;
+
+    @Label("Row Count")
+    @Description("Entities returned or rows changed")
+    public int rowCount;
+
+    @Label("Exception")
+    public String exception;
+}
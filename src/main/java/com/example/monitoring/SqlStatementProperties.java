@@ -0,0 +1,30 @@
+package com.example.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.sql")
+// Statement budgets are keyed by controller method name, e.g. app.sql.budgets.getMessagesByUser=1
+public class SqlStatementProperties {
+
+    // Return X-SQL-Statements / X-SQL-Time-Micros response headers
+    private boolean debugHeaders = false;
+
+    // Budget for routes without their own entry
+    private int defaultBudget = 5;
+
+    // A negative budget turns the check off for that route
+    private Map<String, Integer> budgets = new HashMap<>();
+
+    public int budgetFor(String handlerName) {
+        return budgets.getOrDefault(handlerName, defaultBudget);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.monitoring;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.timing")
+public class TimingProperties {
+
+    // Send a Server-Timing header with the phase breakdown. Off by default: it requires buffering the response body
+    // and copying it once more, on every request it is sent with.
+    private boolean serverTimingHeader = false;
+
+    // Fraction of requests that get the Server-Timing header (and the buffering) while it is switched on
+    private double serverTimingSampleRate = 1.0;
+
+    // Fraction of requests whose phase breakdown is written to the request.timing log, 0 disables it
+    private double logSampleRate = 0.01;
+}
@@ -0,0 +1,234 @@
+package com.example.replica;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.example.replica.ChangeSet.CapturedStatement;
+import com.example.replica.ChangeSet.ParameterCall;
+
+/*
+ * Wraps the primary DataSource and captures every successful write (insert, update, delete, merge and DDL) per
+ * connection. On commit, or straight away for auto-commit statements, the writes are appended to the
+ * ReplicationLog as one change set, holding the log's lock across the primary commit so that log order matches
+ * commit order. Rolled back work never reaches the log. Reads, sequence calls and callable statements are not
+ * captured; rows are replicated with the ids the primary already assigned, so replaying is deterministic. That only
+ * holds while no write draws from a sequence itself (replayed, it would draw again from the replica's own sequence),
+ * so such a write is rejected before it runs: take the value with its own select first and bind it.
+ */
+class CapturingDataSource extends DelegatingDataSource {
+
+    private static final Pattern SEQUENCE_CALL = Pattern.compile("next\\s+value\\s+for|nextval\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    private final ReplicationLog log;
+
+    CapturingDataSource(DataSource targetDataSource, ReplicationLog log) {
+        super(targetDataSource);
+        this.log = log;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxyConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxyConnection(super.getConnection(username, password));
+    }
+
+    private Connection proxyConnection(Connection connection) throws SQLException {
+        return (Connection) Proxy.newProxyInstance(CapturingDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection, connection.getAutoCommit()));
+    }
+
+    static boolean isWrite(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        String trimmed = sql.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        switch (trimmed.substring(0, end).toLowerCase(Locale.ROOT)) {
+            case "insert": case "update": case "delete": case "merge":
+            case "create": case "drop": case "alter": case "truncate":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // A captured write must replay to the same rows on every replica
+    static void checkReplayable(String sql) throws SQLException {
+        if (SEQUENCE_CALL.matcher(sql).find()) {
+            throw new SQLException("Write draws from a sequence and would replay with different ids: " + sql);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final List<CapturedStatement> pending = new ArrayList<>();
+        private boolean autoCommit;
+
+        ConnectionHandler(Connection target, boolean autoCommit) {
+            this.target = target;
+            this.autoCommit = autoCommit;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "commit":
+                    synchronized (log.commitLock()) {
+                        target.commit();
+                        publish();
+                    }
+                    return null;
+                case "setAutoCommit":
+                    // Switching auto-commit back on commits the open transaction
+                    synchronized (log.commitLock()) {
+                        target.setAutoCommit((Boolean) args[0]);
+                        autoCommit = (Boolean) args[0];
+                        if (autoCommit) {
+                            publish();
+                        }
+                    }
+                    return null;
+                case "rollback":
+                    Object result = CapturingDataSource.invoke(target, method, args);
+                    if (args == null) {
+                        pending.clear();
+                    }
+                    return result;
+                case "close":
+                    pending.clear();
+                    return CapturingDataSource.invoke(target, method, args);
+                case "createStatement":
+                    return proxyStatement(Statement.class, CapturingDataSource.invoke(target, method, args), null);
+                case "prepareStatement":
+                    return proxyStatement(PreparedStatement.class, CapturingDataSource.invoke(target, method, args),
+                            (String) args[0]);
+                default:
+                    return CapturingDataSource.invoke(target, method, args);
+            }
+        }
+
+        private Object proxyStatement(Class<?> type, Object statement, String sql) {
+            return Proxy.newProxyInstance(CapturingDataSource.class.getClassLoader(), new Class<?>[] {type},
+                    new StatementHandler(this, statement, sql));
+        }
+
+        // Runs a write and records it once it succeeded; in auto-commit mode it is its own change set
+        Object execute(Object statement, Method method, Object[] args, List<CapturedStatement> writes) throws Throwable {
+            if (writes.isEmpty()) {
+                return CapturingDataSource.invoke(statement, method, args);
+            }
+            if (!autoCommit) {
+                Object result = CapturingDataSource.invoke(statement, method, args);
+                pending.addAll(writes);
+                return result;
+            }
+            synchronized (log.commitLock()) {
+                Object result = CapturingDataSource.invoke(statement, method, args);
+                pending.addAll(writes);
+                publish();
+                return result;
+            }
+        }
+
+        private void publish() {
+            if (!pending.isEmpty()) {
+                long lsn = log.append(new ArrayList<>(pending));
+                pending.clear();
+                ReplicaContext.recordWrite(lsn);
+            }
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final ConnectionHandler connection;
+        private final Object target;
+        private final String sql;
+        // Latest setter per parameter index; a parameter keeps its value until it is set again, batches included
+        private final Map<Integer, ParameterCall> parameters = new HashMap<>();
+        private final List<List<ParameterCall>> batch = new ArrayList<>();
+        private final List<String> sqlBatch = new ArrayList<>();
+
+        StatementHandler(ConnectionHandler connection, Object target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], new ParameterCall(method, args.clone()));
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                if (args == null) {
+                    batch.add(new ArrayList<>(parameters.values()));
+                } else {
+                    sqlBatch.add((String) args[0]);
+                }
+            } else if (name.equals("clearBatch")) {
+                batch.clear();
+                sqlBatch.clear();
+            } else if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                List<CapturedStatement> writes = new ArrayList<>();
+                if (isWrite(sql) && !batch.isEmpty()) {
+                    checkReplayable(sql);
+                    writes.add(new CapturedStatement(sql, true, new ArrayList<>(batch)));
+                }
+                for (String batched : sqlBatch) {
+                    if (isWrite(batched)) {
+                        checkReplayable(batched);
+                        writes.add(new CapturedStatement(batched, false, List.of()));
+                    }
+                }
+                batch.clear();
+                sqlBatch.clear();
+                return connection.execute(target, method, args, writes);
+            } else if (name.equals("execute") || name.equals("executeUpdate") || name.equals("executeLargeUpdate")) {
+                List<CapturedStatement> writes = new ArrayList<>(1);
+                if (args == null && isWrite(sql)) {
+                    checkReplayable(sql);
+                    writes.add(new CapturedStatement(sql, true, List.of(new ArrayList<>(parameters.values()))));
+                } else if (args != null && isWrite((String) args[0])) {
+                    checkReplayable((String) args[0]);
+                    writes.add(new CapturedStatement((String) args[0], false, List.of()));
+                }
+                return connection.execute(target, method, args, writes);
+            }
+            return CapturingDataSource.invoke(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.replica;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/*
+ * The writes of one committed primary transaction (or of one auto-commit statement), in execution order, as
+ * captured by CapturingDataSource. lsn is the position in the replication log and orders change sets the same way
+ * their commits were ordered on the primary.
+ */
+class ChangeSet {
+
+    final long lsn;
+    final long commitMillis;
+    final List<CapturedStatement> statements;
+
+    ChangeSet(long lsn, long commitMillis, List<CapturedStatement> statements) {
+        this.lsn = lsn;
+        this.commitMillis = commitMillis;
+        this.statements = statements;
+    }
+
+    // One executed write: its SQL and, for prepared statements, the parameter setter calls of each execution
+    static class CapturedStatement {
+
+        final String sql;
+        final boolean prepared;
+        final List<List<ParameterCall>> executions;
+
+        CapturedStatement(String sql, boolean prepared, List<List<ParameterCall>> executions) {
+            this.sql = sql;
+            this.prepared = prepared;
+            this.executions = executions;
+        }
+    }
+
+    // A PreparedStatement setter (setInt, setString, setNull, ...) with its arguments, replayed reflectively
+    static class ParameterCall {
+
+        final Method setter;
+        final Object[] args;
+
+        ParameterCall(Method setter, Object[] args) {
+            this.setter = setter;
+            this.args = args;
+        }
+    }
+}
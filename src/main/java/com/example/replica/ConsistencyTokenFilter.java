@@ -0,0 +1,51 @@
+package com.example.replica;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/*
+ * Binds the client's X-Consistency-Token to the request, see ReplicaContext. Tokens are log positions of this
+ * process, so one from before a restart is capped at the current end of the log instead of pinning every read
+ * to the primary until the log catches up; a malformed token is ignored.
+ */
+@Component
+@ConditionalOnProperty(name = "app.replica.enabled", havingValue = "true")
+public class ConsistencyTokenFilter extends OncePerRequestFilter {
+
+    private final ReplicaSet replicaSet;
+
+    public ConsistencyTokenFilter(ReplicaSet replicaSet) {
+        this.replicaSet = replicaSet;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReplicaContext.begin(response, Math.min(parseToken(request.getHeader(ReplicaContext.TOKEN_HEADER)),
+                replicaSet.getLastLsn()));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaContext.end();
+        }
+    }
+
+    private static long parseToken(String token) {
+        if (token == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(token.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
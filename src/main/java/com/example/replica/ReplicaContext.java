@@ -0,0 +1,52 @@
+package com.example.replica;
+
+import javax.servlet.http.HttpServletResponse;
+
+/*
+ * Read-your-writes state of the request on this thread. ConsistencyTokenFilter binds the log position the client
+ * has already seen (its X-Consistency-Token); every write this request commits moves it forward and is echoed
+ * back in the response header. ReplicaRoutingDataSource only sends reads to replicas that have applied at least
+ * that position. Outside of a request nothing is required and writes are not echoed anywhere.
+ */
+public final class ReplicaContext {
+
+    public static final String TOKEN_HEADER = "X-Consistency-Token";
+
+    private static final ThreadLocal<ReplicaContext> CURRENT = new ThreadLocal<>();
+
+    private final HttpServletResponse response;
+    private long requiredLsn;
+
+    private ReplicaContext(HttpServletResponse response, long requiredLsn) {
+        this.response = response;
+        this.requiredLsn = requiredLsn;
+    }
+
+    static void begin(HttpServletResponse response, long requiredLsn) {
+        CURRENT.set(new ReplicaContext(response, requiredLsn));
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    // Log position reads of this request must have applied, 0 when any replica will do. Shared loads (request
+    // coalescing) are only safe to join while this is 0: the load may have been routed by another request.
+    public static long requiredLsn() {
+        ReplicaContext context = CURRENT.get();
+        return context == null ? 0 : context.requiredLsn;
+    }
+
+    // Called right after a change set of this thread was committed and logged
+    static void recordWrite(long lsn) {
+        ReplicaContext context = CURRENT.get();
+        if (context == null || lsn <= context.requiredLsn) {
+            return;
+        }
+        context.requiredLsn = lsn;
+        // Writes are committed by the service, well before the body is written, so the header still goes out
+        if (!context.response.isCommitted()) {
+            context.response.setHeader(TOKEN_HEADER, String.valueOf(lsn));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.replica;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * With app.replica.enabled the application DataSource is the replica-aware one from ReplicaSet instead of Spring
+ * Boot's single pool; the primary pool is still built from spring.datasource.*. Schema and seed data reach the
+ * replicas the same way as every other write, through the replication log.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(DataSourceProperties dataSourceProperties, ReplicaProperties properties,
+                                 MeterRegistry registry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return new ReplicaSet(primary, properties, registry);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        return replicaSet.dataSource();
+    }
+}
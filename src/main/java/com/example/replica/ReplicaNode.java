@@ -0,0 +1,192 @@
+package com.example.replica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.replica.ChangeSet.CapturedStatement;
+import com.example.replica.ChangeSet.ParameterCall;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/*
+ * One replica: a local H2 database with its own read pool, and an applier thread that replays the replication
+ * log into it, one change set per transaction, in log order. The applier holds its own connection from the pool.
+ *
+ * Lag is the age of the oldest change set not applied yet (0 when caught up). A replica that fails to apply a
+ * change set, or lets more than max-pending pile up, has diverged from the primary and is taken out of rotation
+ * for good rather than serving reads that can never catch up.
+ */
+public class ReplicaNode {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaNode.class);
+
+    private final String name;
+    private final HikariDataSource pool;
+    private final long applyDelayMillis;
+    private final int maxPending;
+    private final ConcurrentLinkedQueue<ChangeSet> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread applier;
+
+    private volatile long appliedLsn;
+    private volatile boolean healthy = true;
+    private volatile boolean running = true;
+
+    ReplicaNode(String name, String url, String username, String password, ReplicaProperties properties) {
+        this.name = name;
+        this.applyDelayMillis = properties.getApplyDelayMillis();
+        this.maxPending = properties.getMaxPending();
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        // One extra connection for the applier
+        config.setMaximumPoolSize(properties.getPoolSize() + 1);
+        this.pool = new HikariDataSource(config);
+        this.applier = new Thread(this::applyLoop, name + "-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    HikariDataSource getPool() {
+        return pool;
+    }
+
+    public long getAppliedLsn() {
+        return appliedLsn;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getLagMillis() {
+        ChangeSet oldest = pending.peek();
+        return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.commitMillis);
+    }
+
+    boolean canServe(long requiredLsn, long maxLagMillis) {
+        return healthy && appliedLsn >= requiredLsn && getLagMillis() <= maxLagMillis;
+    }
+
+    void enqueue(ChangeSet changeSet) {
+        if (!healthy) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            fail("more than " + maxPending + " change sets behind", null);
+            return;
+        }
+        pending.add(changeSet);
+        LockSupport.unpark(applier);
+    }
+
+    private void applyLoop() {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            while (running) {
+                ChangeSet changeSet = pending.peek();
+                if (changeSet == null || !healthy) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                    continue;
+                }
+                long wait = changeSet.commitMillis + applyDelayMillis - System.currentTimeMillis();
+                if (wait > 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+                    continue;
+                }
+                try {
+                    apply(connection, changeSet.statements);
+                    connection.commit();
+                } catch (SQLException | ReflectiveOperationException e) {
+                    connection.rollback();
+                    fail("could not apply change set " + changeSet.lsn, e);
+                    continue;
+                }
+                appliedLsn = changeSet.lsn;
+                // Only now, so the lag keeps counting while a change set is being applied
+                pending.poll();
+                pendingCount.decrementAndGet();
+            }
+        } catch (SQLException e) {
+            if (running) {
+                fail("lost its applier connection", e);
+            }
+        }
+    }
+
+    private static void apply(Connection connection, List<CapturedStatement> statements)
+            throws SQLException, ReflectiveOperationException {
+        for (CapturedStatement captured : statements) {
+            if (!captured.prepared) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(captured.sql);
+                }
+                continue;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(captured.sql)) {
+                if (captured.executions.size() == 1) {
+                    bind(statement, captured.executions.get(0));
+                    statement.executeUpdate();
+                } else {
+                    for (List<ParameterCall> execution : captured.executions) {
+                        bind(statement, execution);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement statement, List<ParameterCall> parameters) throws ReflectiveOperationException {
+        for (ParameterCall parameter : parameters) {
+            parameter.setter.invoke(statement, parameter.args);
+        }
+    }
+
+    private void fail(String reason, Exception cause) {
+        if (healthy) {
+            healthy = false;
+            log.error("Replica {} {}, taking it out of rotation", name, reason, cause);
+        }
+        pending.clear();
+        pendingCount.set(0);
+    }
+
+    void close() {
+        running = false;
+        LockSupport.unpark(applier);
+        try {
+            applier.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // DB_CLOSE_DELAY=-1 keeps an in-memory replica alive without connections, drop it explicitly
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        } catch (SQLException e) {
+            log.debug("Replica {} shutdown", name, e);
+        }
+        pool.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.replica;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.replica")
+public class ReplicaProperties {
+
+    // Route read-only transactions to local H2 replicas fed from the primary's committed writes
+    private boolean enabled = false;
+
+    // Number of replica databases, each with its own connection pool and applier thread
+    private int count = 1;
+
+    // JDBC URL of replica n, {n} is replaced by the replica number
+    private String urlTemplate = "jdbc:h2:mem:replica{n};DB_CLOSE_DELAY=-1";
+
+    // Connections per replica pool
+    private int poolSize = 10;
+
+    // A replica further behind than this gets no reads until it catches up, which bounds the staleness of a read
+    private long maxLagMillis = 1000;
+
+    // Change sets a replica may have queued before it is declared broken and taken out of rotation for good
+    private int maxPending = 100000;
+
+    // Artificial replication delay, to exercise lag handling against local replicas that are otherwise never behind
+    private long applyDelayMillis = 0;
+}
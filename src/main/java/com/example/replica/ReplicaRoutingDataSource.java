@@ -0,0 +1,68 @@
+package com.example.replica;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Sends read-only transactions to a replica and everything else to the primary. Candidates are tried round robin;
+ * a replica only qualifies while it is healthy, within max-lag-millis and has applied the request's required log
+ * position (read-your-writes). If none qualifies the read goes to the primary, so reads are never staler than the
+ * lag bound. Must sit behind a LazyConnectionDataSourceProxy: the read-only flag is only known once the
+ * transaction has begun, after the transaction manager asked for its connection.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final List<ReplicaNode> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryReads;
+    private final Counter primaryWrites;
+    private final Map<String, Counter> replicaReads = new HashMap<>();
+
+    ReplicaRoutingDataSource(DataSource primary, List<ReplicaNode> replicas, long maxLagMillis, MeterRegistry registry) {
+        this.replicas = replicas;
+        this.maxLagMillis = maxLagMillis;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (ReplicaNode replica : replicas) {
+            targets.put(replica.getName(), replica.getPool());
+            replicaReads.put(replica.getName(), registry.counter("replica.routed", "target", replica.getName(), "kind", "read"));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.primaryReads = registry.counter("replica.routed", "target", PRIMARY, "kind", "read");
+        this.primaryWrites = registry.counter("replica.routed", "target", PRIMARY, "kind", "write");
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryWrites.increment();
+            return PRIMARY;
+        }
+        long requiredLsn = ReplicaContext.requiredLsn();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaNode replica = replicas.get((start + i) % replicas.size());
+            if (replica.canServe(requiredLsn, maxLagMillis)) {
+                replicaReads.get(replica.getName()).increment();
+                return replica.getName();
+            }
+        }
+        primaryReads.increment();
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.replica;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * The primary pool, the replicas and the replication log between them. dataSource() is what the application
+ * uses: lazy connection proxy -> routing -> primary (capturing writes) or a replica pool.
+ *
+ * Lag is published per replica as replica.lag (milliseconds) and replica.pending (change sets not applied yet).
+ */
+public class ReplicaSet {
+
+    private final HikariDataSource primary;
+    private final ReplicationLog log = new ReplicationLog();
+    private final List<ReplicaNode> replicas = new ArrayList<>();
+    private final DataSource dataSource;
+
+    ReplicaSet(HikariDataSource primary, ReplicaProperties properties, MeterRegistry registry) {
+        this.primary = primary;
+        for (int n = 0; n < Math.max(1, properties.getCount()); n++) {
+            ReplicaNode replica = new ReplicaNode("replica-" + n,
+                    properties.getUrlTemplate().replace("{n}", String.valueOf(n)),
+                    primary.getUsername(), primary.getPassword(), properties);
+            replicas.add(replica);
+            log.addReplica(replica);
+            Gauge.builder("replica.lag", replica, ReplicaNode::getLagMillis).baseUnit("milliseconds")
+                    .tag("replica", replica.getName()).register(registry);
+            Gauge.builder("replica.pending", replica, ReplicaNode::getPendingCount)
+                    .tag("replica", replica.getName()).register(registry);
+        }
+        this.dataSource = new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(
+                new CapturingDataSource(primary, log), replicas, properties.getMaxLagMillis(), registry));
+    }
+
+    DataSource dataSource() {
+        return dataSource;
+    }
+
+    public List<ReplicaNode> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    // Position of the latest committed change set
+    public long getLastLsn() {
+        return log.getLastLsn();
+    }
+
+    public void close() {
+        replicas.forEach(ReplicaNode::close);
+        primary.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.replica;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.example.replica.ChangeSet.CapturedStatement;
+
+/*
+ * Orders committed change sets and hands each one to every replica. The commit on the primary and the append
+ * happen under the log's lock (see CapturingDataSource), so log order is commit order and replaying a log in
+ * order reproduces the primary. Writes therefore commit one at a time while replication is on; with the primary
+ * being an in-memory H2 a commit is short enough for that not to matter.
+ */
+class ReplicationLog {
+
+    private final List<ReplicaNode> replicas = new CopyOnWriteArrayList<>();
+    private long lastLsn;
+
+    void addReplica(ReplicaNode replica) {
+        replicas.add(replica);
+    }
+
+    List<ReplicaNode> getReplicas() {
+        return replicas;
+    }
+
+    // The lock a commit and its append must both happen under
+    Object commitLock() {
+        return this;
+    }
+
+    // Must be called holding commitLock(), right after the primary commit succeeded; returns the change set's lsn
+    long append(List<CapturedStatement> statements) {
+        ChangeSet changeSet = new ChangeSet(++lastLsn, System.currentTimeMillis(), statements);
+        for (ReplicaNode replica : replicas) {
+            replica.enqueue(changeSet);
+        }
+        return changeSet.lsn;
+    }
+
+    synchronized long getLastLsn() {
+        return lastLsn;
+    }
+}
@@ -3,15 +3,23 @@ package com.example.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.entity.Account;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Integer>{
-    // For checking if an account name is taken prior to registration
+public interface AccountRepository extends JpaRepository<Account, Integer>, AccountRepositoryCustom {
+    // For loading the stored hash at login
     Optional<Account> findByUsername(String username);
-    // For login verification    
-    Optional<Account> findByUsernameAndPassword(String username, String password);
-    
+
+    // Rehash at login: a single update, the account loaded for the password check is detached by then
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "update account set password = :password where accountId = :accountId", nativeQuery = true)
+    int updatePassword(@Param("accountId") Integer accountId, @Param("password") String password);
+
 }
@@ -0,0 +1,10 @@
+package com.example.repository;
+
+import com.example.entity.Account;
+
+// Account operations that bypass JPA, implemented in AccountRepositoryImpl
+public interface AccountRepositoryCustom {
+
+    // Insert a new account and set its generated accountId. A taken username is a DuplicateKeyException.
+    Account insert(Account account);
+}
@@ -0,0 +1,30 @@
+package com.example.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Account;
+
+/*
+ * Registration insert in plain JDBC: the id is drawn from hibernate_sequence first (as JPA would) and inserted as a
+ * bound parameter, so the statement the replicas replay carries the primary's id rather than drawing from their own
+ * sequences. A duplicate username is an expected outcome of insert-first registration, and going through Hibernate
+ * would log every conflict as an SQL error; JdbcTemplate translates it to DuplicateKeyException without logging.
+ */
+public class AccountRepositoryImpl implements AccountRepositoryCustom {
+
+    private static final String INSERT = "insert into account (accountId, username, password) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Account insert(Account account) {
+        Integer accountId = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Integer.class);
+        jdbcTemplate.update(INSERT, accountId, account.getUsername(), account.getPassword());
+        account.setAccountId(accountId);
+        return account;
+    }
+}
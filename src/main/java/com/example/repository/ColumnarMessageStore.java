@@ -0,0 +1,441 @@
+package com.example.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.admin.DataImportedEvent;
+import com.example.collections.IntIntHashMap;
+import com.example.collections.IntIntHashMap.IntIntConsumer;
+import com.example.dto.MessageFields;
+import com.example.dto.MessageFields.Field;
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+
+/*
+ * In-memory message engine for the hot read tier (profile "columnar").
+ *
+ * Each message is a row index into primitive columns - int ids/authors, long epochs/versions - and its text lives
+ * UTF-8 encoded in off-heap slabs, so the heap holds a handful of arrays no matter how many messages there are.
+ * Message objects are only materialized for the caller on the way out.
+ *
+ * Rows are append-only: a delete marks the row dead and an edit appends the new text to the slabs. The space they
+ * leave behind is counted in getWastedTextBytes(); once it passes compact-waste-ratio of the slab memory (and at
+ * least one slab), the live rows and their text are rewritten into fresh columns and slabs and the old slabs are
+ * dropped. The engine is seeded from the message table on startup and is not written back to H2, so everything
+ * posted while it is active lives in memory only.
+ *
+ * One read/write lock guards all columns. Reads share it and only copy primitives out of the arrays.
+ */
+@Component
+@Profile("columnar")
+public class ColumnarMessageStore implements MessageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarMessageStore.class);
+    private static final int MISSING = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int slabBytes;
+    private final double compactWasteRatio;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] ids;
+    private int[] postedBy;
+    private long[] epochs;
+    private long[] versions;
+    private long[] textRefs; // slab index << 32 | offset in slab
+    private short[] textLengths;
+    private boolean[] live;
+    private int rows;
+    private int liveRows;
+
+    private final IntIntHashMap rowById;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer currentSlab;
+    private long wastedTextBytes;
+    private int compactions;
+    private int nextId = 1;
+
+    public ColumnarMessageStore(JdbcTemplate jdbcTemplate,
+                                @Value("${app.messages.columnar.initial-capacity:1024}") int initialCapacity,
+                                @Value("${app.messages.columnar.slab-bytes:1048576}") int slabBytes,
+                                @Value("${app.messages.columnar.compact-waste-ratio:0.5}") double compactWasteRatio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.slabBytes = slabBytes;
+        this.compactWasteRatio = compactWasteRatio;
+        this.rowById = new IntIntHashMap(initialCapacity, MISSING);
+        ids = new int[initialCapacity];
+        postedBy = new int[initialCapacity];
+        epochs = new long[initialCapacity];
+        versions = new long[initialCapacity];
+        textRefs = new long[initialCapacity];
+        textLengths = new short[initialCapacity];
+        live = new boolean[initialCapacity];
+    }
+
+    // Seed from the message table in one streaming pass
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            jdbcTemplate.query("select messageId, postedBy, messageText, timePostedEpoch, version from message order by messageId",
+                    resultSet -> {
+                        append(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3),
+                                resultSet.getLong(4), resultSet.getLong(5));
+                    });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Columnar message store loaded {} messages in {} ms, {} bytes per message", liveRows,
+                (System.nanoTime() - start) / 1_000_000, liveRows == 0 ? 0 : getMemoryBytes() / liveRows);
+    }
+
+    // A bulk import replaced the message table, start over from it (ahead of the indexes built on top of this store)
+    @EventListener(DataImportedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(live, false);
+            rows = 0;
+            liveRows = 0;
+            rowById.clear();
+            slabs.clear();
+            currentSlab = null;
+            wastedTextBytes = 0;
+            nextId = 1;
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message save(Message message) {
+        lock.writeLock().lock();
+        try {
+            int id = nextId;
+            append(id, message.getPostedBy(), message.getMessageText(),
+                    message.getTimePostedEpoch() == null ? 0L : message.getTimePostedEpoch(), 0L);
+            message.setMessageId(id);
+            return message;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findAll() {
+        return findAll(MessageFields.ALL);
+    }
+
+    // Only the selected columns are read, a projection without messageText skips decoding the slabs
+    @Override
+    public List<Message> findAll(MessageFields fields) {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(liveRows);
+            for (int row = 0; row < rows; row++) {
+                if (live[row]) {
+                    messages.add(materialize(row, fields));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Message> findById(Integer messageId) {
+        lock.readLock().lock();
+        try {
+            int row = rowById.get(messageId);
+            return row == MISSING ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findByPostedBy(Integer author) {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>();
+            int target = author;
+            for (int row = 0; row < rows; row++) {
+                if (live[row] && postedBy[row] == target) {
+                    messages.add(materialize(row));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findAllById(int[] messageIds) {
+        return findAllById(messageIds, MessageFields.ALL);
+    }
+
+    @Override
+    public List<Message> findAllById(int[] messageIds, MessageFields fields) {
+        int[] sorted = messageIds.clone();
+        Arrays.sort(sorted);
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(sorted.length);
+            for (int messageId : sorted) {
+                int row = rowById.get(messageId);
+                if (row != MISSING) {
+                    messages.add(materialize(row, fields));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void scanAuthors(IntIntConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < rows; row++) {
+                if (live[row]) {
+                    consumer.accept(ids[row], postedBy[row]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Message> deleteById(Integer messageId) {
+        lock.writeLock().lock();
+        try {
+            int row = rowById.remove(messageId);
+            if (row == MISSING) {
+                return Optional.empty();
+            }
+            Message removed = materialize(row);
+            live[row] = false;
+            liveRows--;
+            wastedTextBytes += textLengths[row];
+            compactIfWasteful();
+            return Optional.of(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Long> findVersionById(Integer messageId) {
+        lock.readLock().lock();
+        try {
+            int row = rowById.get(messageId);
+            return row == MISSING ? Optional.empty() : Optional.of(versions[row]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<VersionedMessage> findVersionedById(Integer messageId) {
+        lock.readLock().lock();
+        try {
+            int row = rowById.get(messageId);
+            return row == MISSING ? Optional.empty() : Optional.of(new VersionedMessage(materialize(row), versions[row]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateTextIfVersion(Integer messageId, String messageText, Long version) {
+        lock.writeLock().lock();
+        try {
+            int row = rowById.get(messageId);
+            if (row == MISSING || versions[row] != version) {
+                return 0;
+            }
+            wastedTextBytes += textLengths[row];
+            writeText(row, encode(messageText));
+            versions[row]++;
+            compactIfWasteful();
+            return 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Heap columns, id index and off-heap slabs together
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = (long) ids.length * (Integer.BYTES * 2 + Long.BYTES * 3 + Short.BYTES + 1);
+            return columns + rowById.sizeInBytes() + (long) slabs.size() * slabBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getWastedTextBytes() {
+        lock.readLock().lock();
+        try {
+            return wastedTextBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCompactions() {
+        lock.readLock().lock();
+        try {
+            return compactions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void append(int id, int author, String text, long epoch, long version) {
+        if (rows == ids.length) {
+            grow();
+        }
+        int row = rows++;
+        ids[row] = id;
+        postedBy[row] = author;
+        epochs[row] = epoch;
+        versions[row] = version;
+        live[row] = true;
+        writeText(row, encode(text));
+        rowById.put(id, row);
+        liveRows++;
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    private static byte[] encode(String text) {
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Caller holds the write lock
+    private void writeText(int row, byte[] bytes) {
+        if (currentSlab == null || currentSlab.remaining() < bytes.length) {
+            currentSlab = ByteBuffer.allocateDirect(Math.max(slabBytes, bytes.length));
+            slabs.add(currentSlab);
+        }
+        int offset = currentSlab.position();
+        currentSlab.put(bytes);
+        textRefs[row] = ((long) (slabs.size() - 1) << 32) | offset;
+        textLengths[row] = (short) bytes.length;
+    }
+
+    private Message materialize(int row, MessageFields fields) {
+        if (fields.isAll()) {
+            return materialize(row);
+        }
+        return new Message(ids[row],
+                fields.contains(Field.POSTED_BY) ? postedBy[row] : null,
+                fields.contains(Field.MESSAGE_TEXT) ? text(row) : null,
+                fields.contains(Field.TIME_POSTED_EPOCH) ? epochs[row] : null);
+    }
+
+    private Message materialize(int row) {
+        return new Message(ids[row], postedBy[row], text(row), epochs[row]);
+    }
+
+    private String text(int row) {
+        return new String(textBytes(slabs, textRefs[row], textLengths[row]), StandardCharsets.UTF_8);
+    }
+
+    // Bulk copy through a duplicate, readers share the slabs and must not move their positions
+    private static byte[] textBytes(List<ByteBuffer> slabs, long textRef, short length) {
+        ByteBuffer slab = slabs.get((int) (textRef >>> 32)).duplicate();
+        slab.position((int) textRef);
+        byte[] bytes = new byte[length];
+        slab.get(bytes);
+        return bytes;
+    }
+
+    // Caller holds the write lock
+    private void compactIfWasteful() {
+        long slabMemory = (long) slabs.size() * slabBytes;
+        if (wastedTextBytes >= slabBytes && wastedTextBytes > slabMemory * compactWasteRatio) {
+            compact();
+        }
+    }
+
+    // Caller holds the write lock. Moves the live rows to the front of the columns, in row order, and copies their
+    // text into fresh slabs; dead rows and the text left behind by deletes and edits are gone afterwards.
+    private void compact() {
+        long start = System.nanoTime();
+        long reclaimed = wastedTextBytes;
+        int slabsBefore = slabs.size();
+        List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+        slabs.clear();
+        currentSlab = null;
+        int target = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!live[row]) {
+                continue;
+            }
+            // target <= row, so the slots written here have been read already
+            byte[] bytes = textBytes(oldSlabs, textRefs[row], textLengths[row]);
+            ids[target] = ids[row];
+            postedBy[target] = postedBy[row];
+            epochs[target] = epochs[row];
+            versions[target] = versions[row];
+            live[target] = true;
+            writeText(target, bytes);
+            rowById.put(ids[target], target);
+            target++;
+        }
+        Arrays.fill(live, target, rows, false);
+        rows = target;
+        wastedTextBytes = 0;
+        compactions++;
+        log.debug("Columnar message store compacted {} messages in {} ms, reclaimed {} text bytes, {} -> {} slabs",
+                liveRows, (System.nanoTime() - start) / 1_000_000, reclaimed, slabsBefore, slabs.size());
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        postedBy = Arrays.copyOf(postedBy, capacity);
+        epochs = Arrays.copyOf(epochs, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        textRefs = Arrays.copyOf(textRefs, capacity);
+        textLengths = Arrays.copyOf(textLengths, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+}
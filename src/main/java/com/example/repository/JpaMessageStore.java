@@ -0,0 +1,160 @@
+package com.example.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.collections.IntIntHashMap.IntIntConsumer;
+import com.example.dto.MessageFields;
+import com.example.dto.MessageFields.Field;
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+
+// Default message storage: straight through to the JPA repository
+@Component
+@Profile("!columnar & !sharded")
+public class JpaMessageStore implements MessageStore {
+
+    private final MessageRepository messageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxInList;
+
+    public JpaMessageStore(MessageRepository messageRepository, JdbcTemplate jdbcTemplate,
+                           @Value("${app.messages.max-in-list:500}") int maxInList) {
+        this.messageRepository = messageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxInList = maxInList;
+    }
+
+    @Override
+    public Message save(Message message) {
+        return messageRepository.save(message);
+    }
+
+    @Override
+    public List<Message> findAll() {
+        return messageRepository.findAll();
+    }
+
+    @Override
+    public Optional<Message> findById(Integer messageId) {
+        return messageRepository.findById(messageId);
+    }
+
+    @Override
+    public List<Message> findByPostedBy(Integer postedBy) {
+        return messageRepository.findByPostedBy(postedBy);
+    }
+
+    // One IN-list query per max-in-list ids, so a large batch does not turn into one huge statement
+    @Override
+    public List<Message> findAllById(int[] messageIds) {
+        List<Message> messages = new ArrayList<>(messageIds.length);
+        for (int from = 0; from < messageIds.length; from += maxInList) {
+            int to = Math.min(messageIds.length, from + maxInList);
+            List<Integer> ids = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                ids.add(messageIds[i]);
+            }
+            messages.addAll(messageRepository.findAllById(ids));
+        }
+        messages.sort(Comparator.comparing(Message::getMessageId));
+        return messages;
+    }
+
+    // Projections go through plain JDBC, so the select list only names the columns asked for
+    @Override
+    public List<Message> findAll(MessageFields fields) {
+        if (fields.isAll()) {
+            return findAll();
+        }
+        return jdbcTemplate.query("select " + fields.columns() + " from message order by messageId", projection(fields));
+    }
+
+    @Override
+    public List<Message> findAllById(int[] messageIds, MessageFields fields) {
+        if (fields.isAll()) {
+            return findAllById(messageIds);
+        }
+        List<Message> messages = new ArrayList<>(messageIds.length);
+        for (int from = 0; from < messageIds.length; from += maxInList) {
+            int to = Math.min(messageIds.length, from + maxInList);
+            Object[] ids = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                ids[i - from] = messageIds[i];
+            }
+            messages.addAll(jdbcTemplate.query("select " + fields.columns() + " from message where messageId in ("
+                    + String.join(",", Collections.nCopies(ids.length, "?")) + ")", projection(fields), ids));
+        }
+        messages.sort(Comparator.comparing(Message::getMessageId));
+        return messages;
+    }
+
+    // Maps rows selected with fields.columns(), leaving the other fields null
+    static RowMapper<Message> projection(MessageFields fields) {
+        return (resultSet, row) -> new Message(resultSet.getInt(Field.MESSAGE_ID.property()),
+                fields.contains(Field.POSTED_BY) ? resultSet.getObject(Field.POSTED_BY.property(), Integer.class) : null,
+                fields.contains(Field.MESSAGE_TEXT) ? resultSet.getString(Field.MESSAGE_TEXT.property()) : null,
+                fields.contains(Field.TIME_POSTED_EPOCH) ? resultSet.getObject(Field.TIME_POSTED_EPOCH.property(), Long.class) : null);
+    }
+
+    // Plain JDBC projection, loading every row as an entity just to read two ints would be far more expensive
+    @Override
+    public void scanAuthors(IntIntConsumer consumer) {
+        jdbcTemplate.query("select messageId, postedBy from message", resultSet -> {
+            consumer.accept(resultSet.getInt(1), resultSet.getInt(2));
+        });
+    }
+
+    // One read-write transaction, so the lookup sees the primary and not a replica that may not have the row yet
+    @Override
+    @Transactional
+    public Optional<Message> deleteById(Integer messageId) {
+        Optional<Message> message = messageRepository.findById(messageId);
+        message.ifPresent(messageRepository::delete);
+        return message;
+    }
+
+    // One IN-list DELETE per max-in-list ids, without loading the rows first
+    @Override
+    public void deleteAllById(int[] messageIds) {
+        for (int from = 0; from < messageIds.length; from += maxInList) {
+            int to = Math.min(messageIds.length, from + maxInList);
+            Object[] ids = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                ids[i - from] = messageIds[i];
+            }
+            jdbcTemplate.update("delete from message where messageId in ("
+                    + String.join(",", Collections.nCopies(ids.length, "?")) + ")", ids);
+        }
+    }
+
+    @Override
+    public Optional<Long> findVersionById(Integer messageId) {
+        return messageRepository.findVersionById(messageId);
+    }
+
+    // Plain JDBC, because the entity does not map the version column
+    @Override
+    public Optional<VersionedMessage> findVersionedById(Integer messageId) {
+        return jdbcTemplate.query("select messageId, postedBy, messageText, timePostedEpoch, version from message where messageId = ?",
+                (resultSet, row) -> new VersionedMessage(new Message(resultSet.getInt("messageId"),
+                        resultSet.getObject("postedBy", Integer.class), resultSet.getString("messageText"),
+                        resultSet.getObject("timePostedEpoch", Long.class)), resultSet.getLong("version")),
+                messageId).stream().findFirst();
+    }
+
+    @Override
+    public int updateTextIfVersion(Integer messageId, String messageText, Long version) {
+        return messageRepository.updateTextIfVersion(messageId, messageText, version);
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.repository;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.entity.Message;
 
@@ -11,4 +16,18 @@ import com.example.entity.Message;
 public interface MessageRepository extends JpaRepository<Message, Integer>{
     // For retrieving a list of messages by user ID 
     List<Message> findByPostedBy(Integer postedBy);       
+
+    // Current optimistic concurrency version of a message, empty if the message does not exist. Read-write so it is
+    // always read on the primary: a replica's stale version would fail the compare-and-set that follows
+    @Transactional
+    @Query(value = "select version from message where messageId = :messageId", nativeQuery = true)
+    Optional<Long> findVersionById(@Param("messageId") Integer messageId);
+
+    // Compare-and-set on the version column: returns 0 when the message is gone or was changed concurrently
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "update message set messageText = :messageText, version = version + 1 "
+                 + "where messageId = :messageId and version = :version", nativeQuery = true)
+    int updateTextIfVersion(@Param("messageId") Integer messageId, @Param("messageText") String messageText,
+                            @Param("version") Long version);
 }
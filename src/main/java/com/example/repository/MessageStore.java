@@ -0,0 +1,66 @@
+package com.example.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.example.collections.IntIntHashMap.IntIntConsumer;
+import com.example.dto.MessageFields;
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+
+/*
+ * The storage operations MessageService needs. JpaMessageStore (backed by MessageRepository and H2) is the default;
+ * alternative engines are picked with a Spring profile, e.g. "columnar" for ColumnarMessageStore.
+ */
+public interface MessageStore {
+
+    // Persist a new message, assigning its messageId
+    Message save(Message message);
+
+    List<Message> findAll();
+
+    Optional<Message> findById(Integer messageId);
+
+    List<Message> findByPostedBy(Integer postedBy);
+
+    // Batch primary key lookup in one round trip, ordered by messageId; ids that do not exist are skipped
+    List<Message> findAllById(int[] messageIds);
+
+    // Sparse fieldset variants: only the selected fields (and messageId) are set, the others are null. Engines that
+    // can avoid reading the other columns override these, the defaults load whole messages and drop fields.
+    default List<Message> findAll(MessageFields fields) {
+        return fields.project(findAll());
+    }
+
+    default List<Message> findAllById(int[] messageIds, MessageFields fields) {
+        return fields.project(findAllById(messageIds));
+    }
+
+    // Visit (messageId, postedBy) of every message, for building in-memory indexes
+    void scanAuthors(IntIntConsumer consumer);
+
+    // The removed message, empty if it did not exist
+    Optional<Message> deleteById(Integer messageId);
+
+    // Removes whichever of the messages exist, for purging in bulk. Engines that can delete a batch in a few
+    // statements override this, the default deletes one message at a time.
+    default void deleteAllById(int[] messageIds) {
+        for (int messageId : messageIds) {
+            deleteById(messageId);
+        }
+    }
+
+    // Current optimistic concurrency version, empty if the message does not exist
+    Optional<Long> findVersionById(Integer messageId);
+
+    // The message and its version from one read, so they always belong together. Engines that can read both in one
+    // statement override this, the default looks them up one after the other.
+    default Optional<VersionedMessage> findVersionedById(Integer messageId) {
+        Optional<Message> message = findById(messageId);
+        Optional<Long> version = message.isPresent() ? findVersionById(messageId) : Optional.empty();
+        return version.map(value -> new VersionedMessage(message.get(), value));
+    }
+
+    // Set the text only if the version still matches, bumping it; returns the number of rows changed (0 or 1)
+    int updateTextIfVersion(Integer messageId, String messageText, Long version);
+}
@@ -0,0 +1,415 @@
+package com.example.repository;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import com.example.admin.DataImportedEvent;
+import com.example.collections.IntIntHashMap;
+import com.example.collections.IntIntHashMap.IntIntConsumer;
+import com.example.dto.MessageFields;
+import com.example.dto.VersionedMessage;
+import com.example.entity.Message;
+import com.example.monitoring.RequestTrace;
+import com.example.monitoring.StatementCountingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/*
+ * Author-sharded message storage (profile "sharded"): messages live in N embedded H2 databases, each with its own
+ * pool, and a message's shard is a hash of its postedBy. Writes to different shards never share a lock, a log or a
+ * connection, so write throughput grows with the shard count as long as there are cores to run them on.
+ *
+ *  - per-author queries hit exactly one shard
+ *  - by-id operations find the shard through an in-memory id -> shard directory (8 bytes per message)
+ *  - global listings query every shard in parallel and k-way merge the sorted results by message id
+ *
+ * Ids still come from hibernate_sequence on the primary database, so they are unique across shards and the same
+ * as without sharding. Like the columnar store, the shards are seeded from the message table on startup and after a
+ * bulk import, and are not written back to it. Shards hold no foreign key to account; MessageService checks the
+ * author before posting.
+ */
+@Component
+@Profile("sharded")
+public class ShardedMessageStore implements MessageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedMessageStore.class);
+    private static final int MISSING = -1;
+    private static final int LOAD_BATCH = 1000;
+    private static final String COLUMNS = "messageId, postedBy, messageText, timePostedEpoch";
+    private static final RowMapper<Message> MESSAGE = (resultSet, row) -> message(resultSet);
+
+    private final JdbcTemplate primary;
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+    private final ExecutorService scatter;
+
+    private final ReadWriteLock directoryLock = new ReentrantReadWriteLock();
+    private final IntIntHashMap shardById = new IntIntHashMap(1024, MISSING);
+
+    public ShardedMessageStore(JdbcTemplate jdbcTemplate,
+                               @Value("${app.messages.sharded.shards:4}") int shardCount,
+                               @Value("${app.messages.sharded.url-template:jdbc:h2:mem:messages-shard{n};DB_CLOSE_DELAY=-1}") String urlTemplate,
+                               @Value("${app.messages.sharded.pool-size:8}") int poolSize) {
+        this.primary = jdbcTemplate;
+        for (int n = 0; n < Math.max(1, shardCount); n++) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("messages-shard" + n);
+            config.setJdbcUrl(urlTemplate.replace("{n}", String.valueOf(n)));
+            config.setUsername("sa");
+            config.setMaximumPoolSize(poolSize);
+            HikariDataSource pool = new HikariDataSource(config);
+            pools.add(pool);
+            // Counted like the primary, so the per-route statement budgets still see every statement; queries on the
+            // scatter pool count through helper traces (see onScatter)
+            shards.add(new JdbcTemplate(new StatementCountingDataSource(pool)));
+        }
+        this.scatter = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "messages-shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Recreate the shard tables and seed them from the message table in one streaming pass
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        directoryLock.writeLock().lock();
+        try {
+            shardById.clear();
+            for (JdbcTemplate shard : shards) {
+                shard.execute("drop table if exists message");
+                shard.execute("create table message (messageId int primary key, postedBy int not null, "
+                        + "messageText varchar(255), timePostedEpoch bigint, version bigint default 0 not null)");
+                shard.execute("create index message_postedBy on message (postedBy)");
+            }
+            List<List<Object[]>> batches = new ArrayList<>();
+            shards.forEach(shard -> batches.add(new ArrayList<>(LOAD_BATCH)));
+            primary.query("select " + COLUMNS + ", version from message", resultSet -> {
+                int messageId = resultSet.getInt(1);
+                int shard = shardFor(resultSet.getInt(2));
+                shardById.put(messageId, shard);
+                List<Object[]> batch = batches.get(shard);
+                batch.add(new Object[] {messageId, resultSet.getInt(2), resultSet.getString(3),
+                        resultSet.getObject(4, Long.class), resultSet.getLong(5)});
+                if (batch.size() == LOAD_BATCH) {
+                    insert(shard, batch);
+                }
+            });
+            for (int shard = 0; shard < shards.size(); shard++) {
+                insert(shard, batches.get(shard));
+            }
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+        log.info("Sharded message store loaded {} messages into {} shards in {} ms", shardById.size(), shards.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // A bulk import replaced the message table, start over from it (ahead of the indexes built on top of this store)
+    @EventListener(DataImportedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reload() {
+        load();
+    }
+
+    @PreDestroy
+    public void close() {
+        scatter.shutdownNow();
+        for (HikariDataSource pool : pools) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("shutdown");
+            } catch (SQLException e) {
+                log.debug("Shard {} shutdown", pool.getPoolName(), e);
+            }
+            pool.close();
+        }
+    }
+
+    private void insert(int shard, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            shards.get(shard).batchUpdate("insert into message (" + COLUMNS + ", version) values (?, ?, ?, ?, ?)", batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public Message save(Message message) {
+        Integer messageId = primary.queryForObject("select next value for hibernate_sequence", Integer.class);
+        int shard = shardFor(message.getPostedBy());
+        shards.get(shard).update("insert into message (" + COLUMNS + ") values (?, ?, ?, ?)",
+                messageId, message.getPostedBy(), message.getMessageText(), message.getTimePostedEpoch());
+        directoryLock.writeLock().lock();
+        try {
+            shardById.put(messageId, shard);
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+        message.setMessageId(messageId);
+        return message;
+    }
+
+    @Override
+    public List<Message> findAll() {
+        return mergeById(scatter(shard -> shard.query("select " + COLUMNS + " from message order by messageId", MESSAGE)));
+    }
+
+    @Override
+    public Optional<Message> findById(Integer messageId) {
+        JdbcTemplate shard = shardOf(messageId);
+        if (shard == null) {
+            return Optional.empty();
+        }
+        return shard.query("select " + COLUMNS + " from message where messageId = ?", MESSAGE, messageId)
+                .stream().findFirst();
+    }
+
+    @Override
+    public List<Message> findByPostedBy(Integer postedBy) {
+        return shards.get(shardFor(postedBy)).query(
+                "select " + COLUMNS + " from message where postedBy = ? order by messageId", MESSAGE, postedBy);
+    }
+
+    @Override
+    public List<Message> findAll(MessageFields fields) {
+        if (fields.isAll()) {
+            return findAll();
+        }
+        RowMapper<Message> rows = JpaMessageStore.projection(fields);
+        return mergeById(scatter(shard -> shard.query("select " + fields.columns() + " from message order by messageId", rows)));
+    }
+
+    @Override
+    public List<Message> findAllById(int[] messageIds) {
+        return findAllById(messageIds, MessageFields.ALL);
+    }
+
+    @Override
+    public List<Message> findAllById(int[] messageIds, MessageFields fields) {
+        String columns = fields.isAll() ? COLUMNS : fields.columns();
+        RowMapper<Message> rows = fields.isAll() ? MESSAGE : JpaMessageStore.projection(fields);
+        List<List<Object>> idsByShard = new ArrayList<>();
+        shards.forEach(shard -> idsByShard.add(new ArrayList<>()));
+        directoryLock.readLock().lock();
+        try {
+            for (int messageId : messageIds) {
+                int shard = shardById.get(messageId);
+                if (shard != MISSING) {
+                    idsByShard.get(shard).add(messageId);
+                }
+            }
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+        int shardsHit = 0;
+        for (List<Object> ids : idsByShard) {
+            shardsHit += ids.isEmpty() ? 0 : 1;
+        }
+        List<CompletableFuture<List<Message>>> parts = new ArrayList<>(shardsHit);
+        List<RequestTrace> traces = new ArrayList<>(shardsHit);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Object> ids = idsByShard.get(shard);
+            if (ids.isEmpty()) {
+                continue;
+            }
+            String sql = "select " + columns + " from message where messageId in ("
+                    + String.join(",", Collections.nCopies(ids.size(), "?")) + ") order by messageId";
+            JdbcTemplate template = shards.get(shard);
+            // A single author's ids all live on one shard, which is then simply queried on the calling thread
+            parts.add(shardsHit == 1
+                    ? CompletableFuture.completedFuture(template.query(sql, rows, ids.toArray()))
+                    : onScatter(() -> template.query(sql, rows, ids.toArray()), traces));
+        }
+        return mergeById(join(parts, traces));
+    }
+
+    @Override
+    public void scanAuthors(IntIntConsumer consumer) {
+        for (JdbcTemplate shard : shards) {
+            shard.query("select messageId, postedBy from message", resultSet -> {
+                consumer.accept(resultSet.getInt(1), resultSet.getInt(2));
+            });
+        }
+    }
+
+    @Override
+    public Optional<Message> deleteById(Integer messageId) {
+        Optional<Message> message = findById(messageId);
+        if (message.isPresent() && shardOf(messageId).update("delete from message where messageId = ?", messageId) > 0) {
+            directoryLock.writeLock().lock();
+            try {
+                shardById.remove(messageId);
+            } finally {
+                directoryLock.writeLock().unlock();
+            }
+            return message;
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Long> findVersionById(Integer messageId) {
+        JdbcTemplate shard = shardOf(messageId);
+        if (shard == null) {
+            return Optional.empty();
+        }
+        return shard.queryForList("select version from message where messageId = ?", Long.class, messageId)
+                .stream().findFirst();
+    }
+
+    @Override
+    public Optional<VersionedMessage> findVersionedById(Integer messageId) {
+        JdbcTemplate shard = shardOf(messageId);
+        if (shard == null) {
+            return Optional.empty();
+        }
+        return shard.query("select " + COLUMNS + ", version from message where messageId = ?",
+                (resultSet, row) -> new VersionedMessage(message(resultSet), resultSet.getLong(5)), messageId)
+                .stream().findFirst();
+    }
+
+    @Override
+    public int updateTextIfVersion(Integer messageId, String messageText, Long version) {
+        JdbcTemplate shard = shardOf(messageId);
+        if (shard == null) {
+            return 0;
+        }
+        return shard.update("update message set messageText = ?, version = version + 1 where messageId = ? and version = ?",
+                messageText, messageId, version);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    // Messages per shard, to check how evenly authors spread
+    public int[] getShardSizes() {
+        int[] sizes = new int[shards.size()];
+        directoryLock.readLock().lock();
+        try {
+            shardById.forEach((messageId, shard) -> sizes[shard]++);
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+        return sizes;
+    }
+
+    // Murmur3 finalizer, consecutive account ids would otherwise pile onto the same few shards
+    int shardFor(int postedBy) {
+        int hash = postedBy;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards.size());
+    }
+
+    private JdbcTemplate shardOf(Integer messageId) {
+        directoryLock.readLock().lock();
+        try {
+            int shard = shardById.get(messageId);
+            return shard == MISSING ? null : shards.get(shard);
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    private List<List<Message>> scatter(Function<JdbcTemplate, List<Message>> query) {
+        List<CompletableFuture<List<Message>>> parts = new ArrayList<>(shards.size());
+        List<RequestTrace> traces = new ArrayList<>(shards.size());
+        for (JdbcTemplate shard : shards) {
+            parts.add(onScatter(() -> query.apply(shard), traces));
+        }
+        return join(parts, traces);
+    }
+
+    // Runs a shard query on the scatter pool, recording its statements in a helper trace (added to traces) that
+    // join() adds to the request's trace; the pool's threads have no request trace of their own
+    private CompletableFuture<List<Message>> onScatter(Supplier<List<Message>> query, List<RequestTrace> traces) {
+        RequestTrace helper = RequestTrace.forHelper();
+        traces.add(helper);
+        return CompletableFuture.supplyAsync(() -> {
+            RequestTrace.bind(helper);
+            try {
+                return query.get();
+            } finally {
+                RequestTrace.end();
+            }
+        }, scatter);
+    }
+
+    private static List<List<Message>> join(List<CompletableFuture<List<Message>>> parts, List<RequestTrace> traces) {
+        List<List<Message>> results = new ArrayList<>(parts.size());
+        for (CompletableFuture<List<Message>> part : parts) {
+            results.add(part.join());
+        }
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            traces.forEach(trace::include);
+        }
+        return results;
+    }
+
+    // k-way merge of per-shard lists that are each sorted by message id
+    private static List<Message> mergeById(List<List<Message>> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        if (parts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int total = 0;
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> Integer.compare(parts.get(a[0]).get(a[1]).getMessageId(), parts.get(b[0]).get(b[1]).getMessageId()));
+        for (int part = 0; part < parts.size(); part++) {
+            total += parts.get(part).size();
+            if (!parts.get(part).isEmpty()) {
+                heads.add(new int[] {part, 0});
+            }
+        }
+        List<Message> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Message> part = parts.get(head[0]);
+            merged.add(part.get(head[1]));
+            if (++head[1] < part.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static Message message(ResultSet resultSet) throws SQLException {
+        return new Message(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3),
+                resultSet.getObject(4, Long.class));
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * Salted PBKDF2 password hashing. The iteration count is calibrated once at startup so a single hash takes roughly
+ * app.password.hash-target-millis on this machine, and every hash/verify runs on a small bounded pool so a burst of
+ * logins can only ever occupy that pool - never the Tomcat threads serving message traffic.
+ *
+ * Stored format: $pbkdf2-sha256$<iterations>$<salt>$<hash>  (salt and hash are base64)
+ * Anything not in that format is treated as a legacy plaintext password; a value with the prefix that does not
+ * parse never matches.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final int CALIBRATION_ITERATIONS = 10_000;
+
+    private final SecureRandom random = new SecureRandom();
+    private final long targetMillis;
+    private final int minIterations;
+    private final ThreadPoolExecutor pool;
+
+    private volatile int iterations;
+    // Hash of a random password at the calibrated work factor, verified against for unknown usernames
+    private volatile String dummyHash;
+
+    public PasswordHasher(@Value("${app.password.hash-target-millis:50}") long targetMillis,
+                          @Value("${app.password.min-iterations:10000}") int minIterations,
+                          @Value("${app.password.pool-size:0}") int poolSize,
+                          @Value("${app.password.queue-capacity:64}") int queueCapacity) {
+        this.targetMillis = targetMillis;
+        this.minIterations = minIterations;
+        this.iterations = minIterations;
+
+        // Default to half the cores so hashing can never take the whole CPU away from the rest of the app
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /*
+     * Scale the iteration count so one hash costs about targetMillis. Best of a few runs, so a GC pause or a cold
+     * JIT during startup does not inflate the result.
+     */
+    @PostConstruct
+    public void calibrate() {
+        byte[] salt = newSalt();
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            derive("calibration".toCharArray(), salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long perIteration = Math.max(1L, best / CALIBRATION_ITERATIONS);
+        long calibrated = TimeUnit.MILLISECONDS.toNanos(targetMillis) / perIteration;
+        iterations = (int) Math.max(minIterations, Math.min(Integer.MAX_VALUE, calibrated));
+        byte[] dummySalt = newSalt();
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        dummyHash = PREFIX + iterations + "$" + encoder.encodeToString(dummySalt) + "$"
+                + encoder.encodeToString(derive(UUID.randomUUID().toString().toCharArray(), dummySalt, iterations));
+        log.info("Password hashing calibrated to {} iterations (~{} ms target, {} hashing threads)",
+                iterations, targetMillis, pool.getMaximumPoolSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /*
+     * Hash a raw password on the hashing pool. Throws RejectedExecutionException when the pool is saturated.
+     */
+    public String hash(String rawPassword) {
+        if (rawPassword == null) {
+            return null;
+        }
+        int rounds = iterations;
+        byte[] salt = newSalt();
+        byte[] hash = onPool(() -> derive(rawPassword.toCharArray(), salt, rounds));
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + rounds + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /*
+     * Verify a raw password against a stored value, which may be a hash or a legacy plaintext password.
+     * Throws RejectedExecutionException when the pool is saturated.
+     */
+    public boolean matches(String rawPassword, String storedPassword) {
+        if (rawPassword == null || storedPassword == null) {
+            return false;
+        }
+        if (!isHashed(storedPassword)) {
+            return MessageDigest.isEqual(rawPassword.getBytes(StandardCharsets.UTF_8),
+                    storedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = storedPassword.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        int rounds;
+        byte[] salt;
+        byte[] expected;
+        try {
+            rounds = Integer.parseInt(parts[0]);
+            Base64.Decoder decoder = Base64.getDecoder();
+            salt = decoder.decode(parts[1]);
+            expected = decoder.decode(parts[2]);
+        } catch (IllegalArgumentException e) {
+            // Corrupt stored value (NumberFormatException is an IllegalArgumentException too): a failed login, not a 500
+            return false;
+        }
+        if (rounds <= 0 || salt.length == 0 || expected.length == 0) {
+            return false;
+        }
+        byte[] actual = onPool(() -> derive(rawPassword.toCharArray(), salt, rounds));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /*
+     * Costs the same as verifying against a real hash, so a login for an unknown username takes as long as one with
+     * a wrong password and response times do not tell which usernames exist.
+     */
+    public void verifyDummy(String rawPassword) {
+        matches(rawPassword, dummyHash);
+    }
+
+    /*
+     * True for legacy plaintext values and for hashes made with fewer iterations than the current calibration.
+     */
+    public boolean needsRehash(String storedPassword) {
+        if (storedPassword == null || !isHashed(storedPassword)) {
+            return true;
+        }
+        int end = storedPassword.indexOf('$', PREFIX.length());
+        if (end < 0) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(storedPassword.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public boolean isHashed(String storedPassword) {
+        return storedPassword != null && storedPassword.startsWith(PREFIX);
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private <T> T onPool(Callable<T> task) {
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int rounds) {
+        KeySpec spec = new PBEKeySpec(password, salt, rounds, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.serialization;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * JSON bytes of recently written messages, so reads of messages that have not changed copy bytes instead of running
+ * Jackson again.
+ *
+ * A direct-mapped table: a message id maps to one slot, and a message encoded later simply takes the slot over, so
+ * the cache is bounded without any eviction bookkeeping. An entry remembers the field values it was encoded from
+ * and is only used for a message with exactly those values. The loaded row is its own version, so a stale entry
+ * (e.g. put back by a read that raced an update) is never served. MessageService also drops the entry on
+ * update and delete, which frees it early.
+ *
+ * Metrics: serialization.cache.requests (result=hit|miss).
+ */
+@Component
+public class EncodedMessageCache {
+
+    private final ObjectMapper objectMapper;
+    private final SerializationProperties properties;
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EncodedMessageCache(ObjectMapper objectMapper, SerializationProperties properties, MeterRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        int size = Integer.highestOneBit(Math.max(2, properties.getCacheSlots()) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.hits = registry.counter("serialization.cache.requests", "result", "hit");
+        this.misses = registry.counter("serialization.cache.requests", "result", "miss");
+    }
+
+    // The message as JSON, the way the application's ObjectMapper writes it; callers must not modify the bytes
+    public byte[] encode(Message message) throws JsonProcessingException {
+        Integer messageId = message.getMessageId();
+        if (!properties.isCacheEnabled() || messageId == null) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        int slot = messageId & mask;
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.matches(message)) {
+            hits.increment();
+            return entry.bytes;
+        }
+        misses.increment();
+        byte[] bytes = objectMapper.writeValueAsBytes(message);
+        slots.set(slot, new Entry(message, bytes));
+        return bytes;
+    }
+
+    public void invalidate(int messageId) {
+        int slot = messageId & mask;
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.messageId == messageId) {
+            slots.compareAndSet(slot, entry, null);
+        }
+    }
+
+    public long getHits() {
+        return (long) hits.count();
+    }
+
+    public long getMisses() {
+        return (long) misses.count();
+    }
+
+    private static final class Entry {
+        final int messageId;
+        final Integer postedBy;
+        final String messageText;
+        final Long timePostedEpoch;
+        final byte[] bytes;
+
+        Entry(Message message, byte[] bytes) {
+            this.messageId = message.getMessageId();
+            this.postedBy = message.getPostedBy();
+            this.messageText = message.getMessageText();
+            this.timePostedEpoch = message.getTimePostedEpoch();
+            this.bytes = bytes;
+        }
+
+        boolean matches(Message message) {
+            return messageId == message.getMessageId()
+                    && Objects.equals(postedBy, message.getPostedBy())
+                    && Objects.equals(timePostedEpoch, message.getTimePostedEpoch())
+                    && Objects.equals(messageText, message.getMessageText());
+        }
+    }
+}
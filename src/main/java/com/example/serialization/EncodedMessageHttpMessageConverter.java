@@ -0,0 +1,71 @@
+package com.example.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * The application's JSON converter. A Message, or a List<Message> response, is written by copying each message's
+ * bytes from the EncodedMessageCache straight into the response stream, joined with commas inside brackets, so
+ * list routes run Jackson only for messages that are not cached yet. Everything else, and any response narrowed
+ * with ?fields= (a filtered MappingJacksonValue), goes through Jackson as usual.
+ */
+public class EncodedMessageHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private final EncodedMessageCache cache;
+
+    public EncodedMessageHttpMessageConverter(ObjectMapper objectMapper, EncodedMessageCache cache) {
+        super(objectMapper);
+        this.cache = cache;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Object value = object;
+        if (object instanceof MappingJacksonValue) {
+            MappingJacksonValue container = (MappingJacksonValue) object;
+            value = container.getFilters() == null && container.getSerializationView() == null ? container.getValue() : null;
+        }
+        MediaType contentType = outputMessage.getHeaders().getContentType();
+        if (value == null || getJsonEncoding(contentType) != JsonEncoding.UTF8) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+
+        if (value instanceof Message) {
+            outputMessage.getBody().write(cache.encode((Message) value));
+        } else if (value instanceof List && isListOfMessages(type)) {
+            OutputStream body = outputMessage.getBody();
+            body.write('[');
+            boolean first = true;
+            for (Object element : (List<?>) value) {
+                if (!first) {
+                    body.write(',');
+                }
+                first = false;
+                body.write(element == null ? NULL : cache.encode((Message) element));
+            }
+            body.write(']');
+        } else {
+            super.writeInternal(object, type, outputMessage);
+        }
+    }
+
+    // From the handler's declared return type, e.g. ResponseEntity<List<Message>>
+    private static boolean isListOfMessages(Type type) {
+        return type != null && Message.class.equals(ResolvableType.forType(type).asCollection().resolveGeneric(0));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.serialization;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import com.example.dto.MessageFields;
+import com.example.entity.Message;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/*
+ * Response encodings for the message API. Besides JSON, every route speaks CBOR (application/cbor) for clients
+ * that send it in Accept or Content-Type; it carries the same structure in fewer bytes and is cheaper to write.
+ *
+ * JSON responses made of messages are assembled from pre-encoded bytes (EncodedMessageHttpMessageConverter).
+ *
+ * Message gets the MessageFields.FILTER property filter through a mix-in (the entity itself stays untouched). It
+ * writes every property unless MessageFieldsAdvice narrows it down for a request with ?fields=.
+ */
+@Configuration
+public class MessageEncodingConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer messageFieldsFilter() {
+        return builder -> builder
+                .mixIn(Message.class, MessageFieldsMixin.class)
+                .filters(new SimpleFilterProvider().addFilter(MessageFields.FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    // Replaces Boot's JSON converter, writing messages from their cached encoding
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                 EncodedMessageCache encodedMessages) {
+        return new EncodedMessageHttpMessageConverter(objectMapper, encodedMessages);
+    }
+
+    // Replaces Spring's default CBOR converter, so it shares the application's Jackson configuration
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    @JsonFilter(MessageFields.FILTER)
+    abstract static class MessageFieldsMixin {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.serialization;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.serialization")
+public class SerializationProperties {
+
+    // Reuse the JSON bytes of messages that have not changed since they were last written
+    private boolean cacheEnabled = true;
+
+    // Slots of the encoded message cache (rounded up to a power of two); a message id maps to exactly one slot
+    private int cacheSlots = 65536;
+}
@@ -1,27 +1,35 @@
 package com.example.service;
 
+import java.sql.SQLException;
 import java.util.List;
 
 import javax.security.auth.login.LoginException;
-import javax.transaction.Transactional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
 import com.example.entity.Account;
 import com.example.exception.UsernameAlreadyExistsException;
 import com.example.repository.AccountRepository;
+import com.example.security.PasswordHasher;
 
 @Service
 public class AccountService {
 
+    private static final Logger log = LoggerFactory.getLogger(AccountService.class);
+
     @Autowired
     private final AccountRepository accountRepository;
+    private final PasswordHasher passwordHasher;
 
     // Constructor based dependency injection
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(AccountRepository accountRepository, PasswordHasher passwordHasher) {
         this.accountRepository = accountRepository;
+        this.passwordHasher = passwordHasher;
     }
 
     /*
@@ -34,25 +42,57 @@ public class AccountService {
     /*
      * ------> New User Registration Service <------
      */
-    // rollbackOn Technically not needed, but good practice for future expansion
-    @Transactional(rollbackOn = UsernameAlreadyExistsException.class)
+    // Not @Transactional: hashing happens on the hashing pool and must not hold a DB connection while it waits
     public Account registerAccount(Account newAccount) throws UsernameAlreadyExistsException{
-        
+        // Insert first and let the unique constraint on username decide, no check-then-insert race nor username lookup
+        Account storedAccount = new Account(newAccount.getUsername(), passwordHasher.hash(newAccount.getPassword()));
+        try {
+            accountRepository.insert(storedAccount);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniqueViolation(e)) {
+                // Expected under contention, answered with 409; the insert runs through JDBC so nothing else logs it
+                log.debug("Registration for taken username {} rejected by the unique constraint", newAccount.getUsername());
+                throw new UsernameAlreadyExistsException();
+            }
+            throw e;
+        }
+
+        // Only the hash is persisted, the caller keeps the object it registered with
+        newAccount.setAccountId(storedAccount.getAccountId());
+        return newAccount;
+    }
 
-        if (accountRepository.findByUsername(newAccount.getUsername()).isPresent()) {
-            throw new UsernameAlreadyExistsException();
-        } else {                                                 
-        return accountRepository.save(newAccount);
+    // SQLState 23505 is the standard unique_violation code, anything else (e.g. a null username) is not a duplicate
+    private static boolean isUniqueViolation(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && "23505".equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
         }
+        return false;
     }
 
     /*
      * ------> User login Service <------
      */
-    @Transactional(rollbackOn = LoginException.class)
+    // Not @Transactional for the same reason as registration; the lookup and the optional rehash are separate short transactions
     public Account accountLogin(Account account) throws LoginException{
-        Account verifiedAccount = accountRepository.findByUsernameAndPassword(account.getUsername(), account.getPassword())
-                                                    .orElseThrow(() -> new LoginException("Invalid username or password."));        
-        return verifiedAccount;
+        Account storedAccount = accountRepository.findByUsername(account.getUsername()).orElse(null);
+        if (storedAccount == null) {
+            // Same hashing work as a wrong password, so the response time does not reveal whether the account exists
+            passwordHasher.verifyDummy(account.getPassword());
+            throw new LoginException("Invalid username or password.");
+        }
+        if (!passwordHasher.matches(account.getPassword(), storedAccount.getPassword())) {
+            throw new LoginException("Invalid username or password.");
+        }
+
+        // Transparently migrate plaintext rows and hashes made with an outdated work factor
+        if (passwordHasher.needsRehash(storedAccount.getPassword())) {
+            accountRepository.updatePassword(storedAccount.getAccountId(), passwordHasher.hash(account.getPassword()));
+        }
+
+        // Never hand the stored hash back to the client
+        return new Account(storedAccount.getAccountId(), storedAccount.getUsername(), account.getPassword());
     }
 }
@@ -0,0 +1,154 @@
+package com.example.service;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.example.admin.DataImportedEvent;
+import com.example.collections.IntObjectHashMap;
+import com.example.collections.IntObjectHashMap.IntObjectConsumer;
+import com.example.collections.SortedIntList;
+import com.example.repository.MessageStore;
+import com.example.tombstone.MessageTombstones;
+
+/*
+ * In-memory author -> message ids index, so per-user reads can go straight to a primary key batch lookup instead
+ * of scanning message by postedBy.
+ *
+ * Authors are spread over STRIPES independent maps, each behind its own read/write lock, so posts and deletes for
+ * different authors do not serialize on one lock. The index is built from the store on startup and kept current by
+ * MessageService (soft-deleted messages are left out); rows written around the service (e.g. straight through the
+ * repository) only show up after rebuild(), which also runs after a bulk import.
+ */
+@Component
+public class AuthorMessageIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthorMessageIndex.class);
+    private static final int STRIPES = 64;
+    private static final int[] NONE = new int[0];
+
+    private final MessageStore messageStore;
+    private final MessageTombstones tombstones;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public AuthorMessageIndex(MessageStore messageStore, MessageTombstones tombstones) {
+        this.messageStore = messageStore;
+        this.tombstones = tombstones;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // After the stores reloaded, ahead of structures seeded from this index
+    @PostConstruct
+    @EventListener(DataImportedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void rebuild() {
+        long start = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            stripe.lock.writeLock().lock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.authors.clear();
+            }
+            // Tombstoned messages are still in the store until they are purged
+            messageStore.scanAuthors((messageId, postedBy) -> {
+                if (!tombstones.contains(messageId)) {
+                    listFor(stripeFor(postedBy), postedBy).add(messageId);
+                }
+            });
+        } finally {
+            for (Stripe stripe : stripes) {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+        log.info("Author message index built in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void add(int postedBy, int messageId) {
+        Stripe stripe = stripeFor(postedBy);
+        stripe.lock.writeLock().lock();
+        try {
+            listFor(stripe, postedBy).add(messageId);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int postedBy, int messageId) {
+        Stripe stripe = stripeFor(postedBy);
+        stripe.lock.writeLock().lock();
+        try {
+            SortedIntList messageIds = stripe.authors.get(postedBy);
+            if (messageIds != null && messageIds.remove(messageId) && messageIds.isEmpty()) {
+                stripe.authors.remove(postedBy);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    // Every author with their ascending ids, one stripe at a time (not an atomic view of the whole index)
+    public void forEachAuthor(IntObjectConsumer<int[]> consumer) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                stripe.authors.forEach((postedBy, messageIds) -> consumer.accept(postedBy, messageIds.toArray()));
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Ascending message ids of the author, empty if they have none
+    public int[] messageIds(int postedBy) {
+        Stripe stripe = stripeFor(postedBy);
+        stripe.lock.readLock().lock();
+        try {
+            SortedIntList messageIds = stripe.authors.get(postedBy);
+            return messageIds == null ? NONE : messageIds.toArray();
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit of the author's ids below beforeId, newest (largest) first
+    public int[] newestIds(int postedBy, int beforeId, int limit) {
+        Stripe stripe = stripeFor(postedBy);
+        stripe.lock.readLock().lock();
+        try {
+            SortedIntList messageIds = stripe.authors.get(postedBy);
+            return messageIds == null ? NONE : messageIds.descendingBelow(beforeId, limit);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    private Stripe stripeFor(int postedBy) {
+        return stripes[(postedBy ^ (postedBy >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Caller holds the stripe's write lock
+    private static SortedIntList listFor(Stripe stripe, int postedBy) {
+        SortedIntList messageIds = stripe.authors.get(postedBy);
+        if (messageIds == null) {
+            messageIds = new SortedIntList();
+            stripe.authors.put(postedBy, messageIds);
+        }
+        return messageIds;
+    }
+
+    private static final class Stripe {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final IntObjectHashMap<SortedIntList> authors = new IntObjectHashMap<>(16);
+    }
+}
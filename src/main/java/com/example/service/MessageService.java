@@ -1,28 +1,76 @@
 package com.example.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.coalescing.RequestCoalescer;
+import com.example.coalescing.SingleFlight;
+import com.example.collections.IntObjectHashMap;
+import com.example.dto.FeedPage;
+import com.example.dto.MessageFields;
 import com.example.dto.MessageText;
+import com.example.dto.VersionedMessage;
 import com.example.entity.Message;
 import com.example.exception.AccountDoesNotExistException;
 import com.example.exception.MessageDoesNotExistException;
+import com.example.exception.MessageVersionConflictException;
+import com.example.metrics.ContentionMetrics;
+import com.example.monitoring.CacheLookupEvent;
+import com.example.replica.ReplicaContext;
 import com.example.repository.AccountRepository;
-import com.example.repository.MessageRepository;
+import com.example.repository.MessageStore;
+import com.example.serialization.EncodedMessageCache;
+import com.example.stream.MessageEvent;
+import com.example.stream.MessageStreamBroadcaster;
+import com.example.tombstone.MessageTombstones;
 
 @Service
 public class MessageService {
 
+    public static final String AUTHOR_INDEX = "authorIndex";
+    public static final String MESSAGE_BY_ID = "messageById";
+    public static final String MESSAGES_BY_AUTHOR = "messagesByAuthor";
+
     @Autowired
-    private final MessageRepository messageRepository;
+    private final MessageStore messageStore;
     private final AccountRepository accountRepository;
+    private final ContentionMetrics contentionMetrics;
+    private final AuthorMessageIndex authorMessageIndex;
+    private final RecentMessages recentMessages;
+    private final MessageTombstones tombstones;
+    private final TransactionTemplate transactions;
+    private final EncodedMessageCache encodedMessages;
+    private final MessageStreamBroadcaster messageStream;
+    private final int updateMaxRetries;
+    private final SingleFlight<Integer, VersionedMessage> messageLoads;
+    private final SingleFlight<Integer, List<Message>> authorLoads;
 
     // Constructor based DI
-    public MessageService(MessageRepository messageRepository, AccountRepository accountRepository) {
-        this.messageRepository = messageRepository;
+    public MessageService(MessageStore messageStore, AccountRepository accountRepository,
+                          ContentionMetrics contentionMetrics, AuthorMessageIndex authorMessageIndex, RecentMessages recentMessages,
+                          MessageTombstones tombstones, TransactionTemplate transactions, EncodedMessageCache encodedMessages,
+                          MessageStreamBroadcaster messageStream, RequestCoalescer coalescer,
+                          @Value("${app.messages.update-max-retries:3}") int updateMaxRetries) {
+        this.messageStore = messageStore;
         this.accountRepository = accountRepository;
+        this.contentionMetrics = contentionMetrics;
+        this.authorMessageIndex = authorMessageIndex;
+        this.recentMessages = recentMessages;
+        this.tombstones = tombstones;
+        this.transactions = transactions;
+        this.encodedMessages = encodedMessages;
+        this.messageStream = messageStream;
+        this.updateMaxRetries = updateMaxRetries;
+        this.messageLoads = coalescer.group(MESSAGE_BY_ID);
+        this.authorLoads = coalescer.group(MESSAGES_BY_AUTHOR);
     }
 
     /*
@@ -31,58 +79,223 @@ public class MessageService {
     public Message postMessage(Message message) throws AccountDoesNotExistException{
         accountRepository.findById(message.getPostedBy()).orElseThrow(() -> new AccountDoesNotExistException());
 
-        Message newMessage = new Message();
-        newMessage.setMessageText(message.getMessageText());
-        
-        return messageRepository.save(message);
-        
+        Message saved = transactions.execute(status -> {
+            Message inserted = messageStore.save(message);
+            // A tombstone still standing for this id belongs to an older row; it must neither hide nor purge this one
+            tombstones.revive(inserted.getMessageId());
+            return inserted;
+        });
+        authorMessageIndex.add(saved.getPostedBy(), saved.getMessageId());
+        recentMessages.add(saved);
+        authorLoads.forget(saved.getPostedBy());
+        messageStream.publish(MessageEvent.Type.CREATED, saved);
+        return saved;
     }
     
     /*
      * ------> Retrieve All Messages <------
      */
-    public List<Message> getAllMessages() {        
-        return messageRepository.findAll();
+    // Fields not asked for are left out of the select list where the store supports it
+    public List<Message> getAllMessages(MessageFields fields) {        
+        return tombstones.filter(messageStore.findAll(fields));
+    }
+
+    /*
+     * ------> Retrieve Recent Messages <------
+     */
+    // Served from the in-memory ring, no store access
+    public List<Message> getRecentMessages(Integer limit) {
+        return recentMessages.newest(limit == null ? recentMessages.getCapacity() : limit);
     }
 
     /*
      * ------> Retrieve Message By Id <------
      */
-    public Message getMessageById(Integer Id) {        
-        return messageRepository.findById(Id).orElse(null);                                
+    // Concurrent lookups of the same (e.g. viral) message share one load, which also reads the version for the ETag.
+    // A request holding a consistency token loads on its own, another request's load may come from a lagging replica.
+    public VersionedMessage getMessageById(Integer Id) {        
+        if (tombstones.contains(Id)) {
+            return null;
+        }
+        if (ReplicaContext.requiredLsn() > 0) {
+            return messageStore.findVersionedById(Id).orElse(null);
+        }
+        return messageLoads.execute(Id, () -> messageStore.findVersionedById(Id).orElse(null));
+    }
+
+    /*
+     * ------> Retrieve Messages By Ids <------
+     */
+    // One batch lookup for the distinct ids; the result follows the requested order, with null for missing ids
+    public List<Message> getMessagesByIds(List<Integer> ids, MessageFields fields) {
+        int[] messageIds = ids.stream().filter(id -> id != null).mapToInt(Integer::intValue).distinct().toArray();
+        IntObjectHashMap<Message> found = new IntObjectHashMap<>(messageIds.length);
+        if (messageIds.length > 0) {
+            for (Message message : tombstones.filter(messageStore.findAllById(messageIds, fields))) {
+                found.put(message.getMessageId(), message);
+            }
+        }
+        List<Message> messages = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            messages.add(id == null ? null : found.get(id));
+        }
+        return messages;
+    }
+
+    /*
+     * ------> Multi-Author Feed <------
+     */
+    // Keyset paged by messageId (posting order): each author's newest ids below the cursor come from the index, a
+    // k-way merge picks the page's ids and one batch lookup loads them, so the cost follows the page size and not
+    // how many messages the authors have
+    public FeedPage getFeed(List<Integer> authors, Integer before, int limit) {
+        int beforeId = before == null ? Integer.MAX_VALUE : before;
+        int[] authorIds = authors.stream().filter(id -> id != null).mapToInt(Integer::intValue).distinct().toArray();
+        // One id more than the page per author tells whether there is a next page
+        List<int[]> newest = new ArrayList<>(authorIds.length);
+        for (int author : authorIds) {
+            newest.add(authorMessageIndex.newestIds(author, beforeId, limit + 1));
+        }
+
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, newest.size()),
+                (a, b) -> Integer.compare(newest.get(b[0])[b[1]], newest.get(a[0])[a[1]]));
+        for (int author = 0; author < newest.size(); author++) {
+            if (newest.get(author).length > 0) {
+                heads.add(new int[] {author, 0});
+            }
+        }
+        int[] pageIds = new int[limit];
+        int count = 0;
+        while (count < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            int[] ids = newest.get(head[0]);
+            pageIds[count++] = ids[head[1]];
+            if (++head[1] < ids.length) {
+                heads.add(head);
+            }
+        }
+
+        List<Message> messages = new ArrayList<>(count);
+        if (count > 0) {
+            messages.addAll(tombstones.filter(messageStore.findAllById(Arrays.copyOf(pageIds, count))));
+            Collections.reverse(messages);
+        }
+        return new FeedPage(messages, heads.isEmpty() ? null : pageIds[count - 1]);
     }
 
     /*
      * ------> Delete Message By Id <------
      */
+    // A soft delete: the message is tombstoned, which hides it from every read at once, and TombstonePurger removes
+    // the row later in a batch
     public Integer deleteMessageById(Integer Id) throws MessageDoesNotExistException{
-        messageRepository.findById(Id).orElseThrow(() -> new MessageDoesNotExistException());
-
-        messageRepository.deleteById(Id);       
+        Message deleted = transactions.execute(status -> tombstone(Id));
+        if (deleted == null) {
+            throw new MessageDoesNotExistException();
+        }
+        authorMessageIndex.remove(deleted.getPostedBy(), deleted.getMessageId());
+        recentMessages.remove(deleted.getMessageId());
+        encodedMessages.invalidate(deleted.getMessageId());
+        forgetLoads(deleted.getMessageId());
+        authorLoads.forget(deleted.getPostedBy());
+        messageStream.publish(MessageEvent.Type.DELETED, deleted);
         return 1;
-        
-        
+    }
+
+    // The tombstoned message, null if it did not exist or already was tombstoned. Runs in a read-write transaction
+    // so the lookup sees the primary and not a replica that may not have the row yet.
+    private Message tombstone(Integer messageId) {
+        if (tombstones.contains(messageId)) {
+            return null;
+        }
+        Message message = messageStore.findById(messageId).orElse(null);
+        return message != null && tombstones.add(messageId) ? message : null;
     }
 
     /*
      * ------> Update Message Text <------
      */
-    public Integer updateMessageById(Integer messageId, MessageText messageText) throws MessageDoesNotExistException{        
-        Message updatedMessage = messageRepository.findById(messageId).orElseThrow(() -> new MessageDoesNotExistException());
+    public Integer updateMessageById(Integer messageId, MessageText messageText) throws MessageDoesNotExistException, MessageVersionConflictException{
+        updateMessageText(messageId, messageText, null);
+        return 1;
+    }
+
+    /*
+     * Versioned update, returns the new version.
+     * With an expected version (If-Match) this is a single conditional UPDATE and a mismatch is reported straight
+     * back to the client. Without one, the current version is read and the conditional UPDATE retried a bounded
+     * number of times when another writer gets in between.
+     */
+    public Long updateMessageText(Integer messageId, MessageText messageText, Long expectedVersion) throws MessageDoesNotExistException, MessageVersionConflictException{
+        if (tombstones.contains(messageId)) {
+            throw new MessageDoesNotExistException();
+        }
+        if (expectedVersion != null) {
+            if (messageStore.updateTextIfVersion(messageId, messageText.getMessageText(), expectedVersion) == 1) {
+                publishUpdate(messageId, expectedVersion + 1, messageText.getMessageText());
+                return expectedVersion + 1;
+            }
+            Long currentVersion = messageStore.findVersionById(messageId).orElseThrow(() -> new MessageDoesNotExistException());
+            contentionMetrics.recordConflict(messageId);
+            throw new MessageVersionConflictException(currentVersion);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            Long currentVersion = messageStore.findVersionById(messageId).orElseThrow(() -> new MessageDoesNotExistException());
+            if (messageStore.updateTextIfVersion(messageId, messageText.getMessageText(), currentVersion) == 1) {
+                publishUpdate(messageId, currentVersion + 1, messageText.getMessageText());
+                return currentVersion + 1;
+            }
+            contentionMetrics.recordConflict(messageId);
+            if (attempt >= updateMaxRetries) {
+                contentionMetrics.recordExhausted();
+                throw new MessageVersionConflictException(messageStore.findVersionById(messageId).orElse(null));
+            }
+            contentionMetrics.recordRetry(messageId);
+        }
+    }
 
-        updatedMessage.setMessageText(messageText.getMessageText());
-        
-        messageRepository.save(updatedMessage);
-        return 1;        
+    // Reads that start after a write must not join a load that may have read the row before it
+    private void forgetLoads(Integer messageId) {
+        messageLoads.forget(messageId);
+    }
+
+    // The update itself does not return the row, so it is only read back when someone is listening. It does not
+    // know the author either, so every author listing in flight is let go.
+    private void publishUpdate(Integer messageId, long version, String messageText) {
+        recentMessages.update(messageId, version, messageText);
+        encodedMessages.invalidate(messageId);
+        forgetLoads(messageId);
+        authorLoads.forgetAll();
+        if (messageStream.hasSubscribers()) {
+            messageStore.findById(messageId).ifPresent(message -> messageStream.publish(MessageEvent.Type.UPDATED, message));
+        }
     }
 
     /*
      * ------> Retrieve All Messages By User <------
      */
-    public List<Message> findMessagesByAccountId(Integer accountId) throws AccountDoesNotExistException{
-        List<Message> messageList = messageRepository.findByPostedBy(accountId);
+    // Concurrent listings of the same author share one load; projections are rarer and load on their own, and so do
+    // requests holding a consistency token (see getMessageById)
+    public List<Message> findMessagesByAccountId(Integer accountId, MessageFields fields) throws AccountDoesNotExistException{
+        if (!fields.isAll() || ReplicaContext.requiredLsn() > 0) {
+            return loadMessagesByAccountId(accountId, fields);
+        }
+        return authorLoads.execute(accountId, () -> loadMessagesByAccountId(accountId, fields));
+    }
+
+    private List<Message> loadMessagesByAccountId(Integer accountId, MessageFields fields) throws AccountDoesNotExistException{
+        CacheLookupEvent lookup = new CacheLookupEvent();
+        lookup.begin();
+        int[] messageIds = authorMessageIndex.messageIds(accountId);
+        // A miss means an author without messages, or an unknown account, which costs an account lookup
+        lookup.commit(AUTHOR_INDEX, accountId, messageIds.length > 0);
+        if (messageIds.length > 0) {
+            // Messages can only be posted by existing accounts, so the author needs no separate check
+            return tombstones.filter(messageStore.findAllById(messageIds, fields));
+        }
 
         accountRepository.findById(accountId).orElseThrow(() -> new AccountDoesNotExistException());
-        return messageList;
+        return Collections.emptyList();
     }
 }
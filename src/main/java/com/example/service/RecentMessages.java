@@ -0,0 +1,210 @@
+package com.example.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.admin.DataImportedEvent;
+import com.example.collections.RingBuffer;
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+
+/*
+ * The newest messages, newest first, for GET /messages/recent without going to the store.
+ *
+ * Messages live in a lock-free RingBuffer in posting order: MessageService appends every post, and patches an
+ * update or delete into the slot still holding that message with a compare-and-set (an update only if it carries a
+ * newer version than the slot). A read walks back from the head over the published slots into one array, so it
+ * takes no lock and runs no query. The ring holds private copies that readers share and must not modify.
+ *
+ * Deleted messages leave a hole until newer posts push it out, so a read can return fewer than capacity messages.
+ * The ring is seeded from the author index's newest ids on startup and after a bulk import; rows written around
+ * the service only show up once they are among the newest at the next seeding.
+ */
+@Component
+public class RecentMessages {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentMessages.class);
+    // Seeded messages do not carry their version, any update is newer
+    private static final long UNKNOWN_VERSION = -1;
+    // Version of a freshly inserted row (see data.sql)
+    private static final long INITIAL_VERSION = 0;
+
+    private final MessageStore messageStore;
+    private final AuthorMessageIndex authorMessageIndex;
+    private final TransactionTemplate transactions;
+    private final int capacity;
+    private volatile RingBuffer<Entry> ring;
+
+    public RecentMessages(MessageStore messageStore, AuthorMessageIndex authorMessageIndex,
+                          TransactionTemplate transactions, @Value("${app.messages.recent.capacity:512}") int capacity) {
+        this.messageStore = messageStore;
+        this.authorMessageIndex = authorMessageIndex;
+        this.transactions = transactions;
+        this.capacity = capacity;
+        this.ring = new RingBuffer<>(capacity);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        seed();
+    }
+
+    // After the author index has been rebuilt from the imported data
+    @EventListener(DataImportedEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void reload() {
+        seed();
+    }
+
+    // Fills a new ring with the newest capacity messages: the ids come from the index, the rows from one batch lookup
+    public void seed() {
+        long start = System.nanoTime();
+        NewestIds newest = new NewestIds(capacity);
+        authorMessageIndex.forEachAuthor((postedBy, messageIds) -> {
+            for (int i = messageIds.length - 1; i >= 0; i--) {
+                if (!newest.offer(messageIds[i])) {
+                    break;
+                }
+            }
+        });
+        RingBuffer<Entry> seeded = new RingBuffer<>(capacity);
+        int[] messageIds = newest.sorted();
+        if (messageIds.length > 0) {
+            // Read-write, so the rows come from the primary and not a replica still catching up on startup
+            transactions.executeWithoutResult(status -> {
+                for (Message message : messageStore.findAllById(messageIds)) {
+                    seeded.publish(new Entry(copy(message, message.getMessageText()), UNKNOWN_VERSION));
+                }
+            });
+        }
+        ring = seeded;
+        log.info("Recent messages seeded with {} messages in {} ms", messageIds.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void add(Message message) {
+        ring.publish(new Entry(copy(message, message.getMessageText()), INITIAL_VERSION));
+    }
+
+    public void update(int messageId, long version, String messageText) {
+        patch(messageId, entry -> entry.version >= version ? null : new Entry(copy(entry.message, messageText), version));
+    }
+
+    public void remove(int messageId) {
+        patch(messageId, entry -> new Entry(null, entry.version));
+    }
+
+    // Up to limit messages, newest first
+    public List<Message> newest(int limit) {
+        RingBuffer<Entry> ring = this.ring;
+        long head = ring.head();
+        long oldest = Math.max(0, head - ring.capacity());
+        Message[] messages = new Message[Math.max(0, Math.min(limit, capacity))];
+        int count = 0;
+        for (long sequence = head - 1; sequence >= oldest && count < messages.length; sequence--) {
+            Entry entry = ring.read(sequence);
+            if (entry != null && entry.message != null) {
+                messages[count++] = entry.message;
+            }
+        }
+        return Arrays.asList(messages).subList(0, count);
+    }
+
+    // Replaces the entry holding the message; change returns null when there is nothing to do
+    private void patch(int messageId, UnaryOperator<Entry> change) {
+        RingBuffer<Entry> ring = this.ring;
+        long head = ring.head();
+        long oldest = Math.max(0, head - ring.capacity());
+        for (long sequence = head - 1; sequence >= oldest; sequence--) {
+            Entry entry;
+            while ((entry = ring.read(sequence)) != null && entry.holds(messageId)) {
+                Entry replacement = change.apply(entry);
+                if (replacement == null || ring.replace(sequence, entry, replacement)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Message copy(Message message, String messageText) {
+        return new Message(message.getMessageId(), message.getPostedBy(), messageText, message.getTimePostedEpoch());
+    }
+
+    private static final class Entry {
+        final Message message; // null once deleted
+        final long version;
+
+        Entry(Message message, long version) {
+            this.message = message;
+            this.version = version;
+        }
+
+        boolean holds(int messageId) {
+            return message != null && message.getMessageId() == messageId;
+        }
+    }
+
+    // Bounded min-heap of the largest ids offered
+    private static final class NewestIds {
+        private final int[] heap;
+        private int size;
+
+        NewestIds(int capacity) {
+            heap = new int[capacity];
+        }
+
+        // False when the id is too old to make it in, so are all smaller ids of the same author
+        boolean offer(int messageId) {
+            if (size < heap.length) {
+                int i = size++;
+                while (i > 0 && heap[(i - 1) / 2] > messageId) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = messageId;
+                return true;
+            }
+            if (size == 0 || messageId <= heap[0]) {
+                return false;
+            }
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= messageId) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = messageId;
+            return true;
+        }
+
+        int[] sorted() {
+            int[] messageIds = Arrays.copyOf(heap, size);
+            Arrays.sort(messageIds);
+            return messageIds;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.stream;
+
+import com.example.entity.Message;
+
+// One entry in the message stream ring: what happened and the message as it was afterwards (before, for a delete)
+public class MessageEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED;
+
+        // SSE event name
+        public String eventName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Type type;
+    private final Message message;
+
+    public MessageEvent(Type type, Message message) {
+        this.type = type;
+        this.message = message;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.stream;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.collections.RingBuffer;
+import com.example.entity.Message;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Fan-out of message changes to Server-Sent Events subscribers.
+ *
+ * MessageService publishes every change into a RingBuffer, which only costs the writer a sequence increment and a
+ * slot store. Each subscriber keeps its own cursor into the ring. A single dispatcher thread wakes on publish (or
+ * every heartbeat) and hands subscribers with something to send to a small writer pool; a subscriber is never on
+ * more than one writer at a time. Subscriptions are async requests, so an idle subscriber costs a socket and a few
+ * objects but no thread, and tens of thousands of them fit on one node (see server.tomcat.max-connections).
+ *
+ * A subscriber that falls more than ring-capacity events behind gets a "resync" event (reload via GET /messages)
+ * and continues from the head. A client whose connection fails is dropped. Reconnecting with Last-Event-ID
+ * replays from the ring when the events are still there.
+ *
+ * Metrics: stream.subscribers, stream.resyncs and stream.dropped.
+ */
+@Component
+public class MessageStreamBroadcaster {
+
+    public static final String STREAM_PATH = "/messages/stream";
+    public static final String RESYNC_EVENT = "resync";
+
+    private static final Logger log = LoggerFactory.getLogger(MessageStreamBroadcaster.class);
+
+    private final StreamProperties properties;
+    private final RingBuffer<MessageEvent> ring;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor writers;
+    private final Thread dispatcher;
+    private final long heartbeatNanos;
+    private final Counter resyncs;
+    private final Counter dropped;
+
+    private volatile boolean running = true;
+
+    public MessageStreamBroadcaster(StreamProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.ring = new RingBuffer<>(properties.getRingCapacity());
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(properties.getHeartbeatMillis());
+
+        // Every subscriber is queued at most once, so the queue is bounded by max-subscribers
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(properties.getWriterThreads(), properties.getWriterThreads(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "message-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.dispatcher = new Thread(this::dispatch, "message-stream-dispatcher");
+        this.dispatcher.setDaemon(true);
+
+        Gauge.builder("stream.subscribers", subscriberCount, AtomicInteger::get).register(registry);
+        this.resyncs = registry.counter("stream.resyncs");
+        this.dropped = registry.counter("stream.dropped");
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        writers.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.emitter.complete();
+            } catch (RuntimeException e) {
+                // already completed, or the connector is gone because the web server stopped first
+            }
+        }
+        subscribers.clear();
+        subscriberCount.set(0);
+    }
+
+    public void publish(MessageEvent.Type type, Message message) {
+        ring.publish(new MessageEvent(type, message));
+        LockSupport.unpark(dispatcher);
+    }
+
+    public boolean hasSubscribers() {
+        return subscriberCount.get() > 0;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /*
+     * Opens a subscription, optionally limited to one author. With a Last-Event-ID the subscriber starts right after
+     * that event, otherwise at the head. Returns null when the node is already at max-subscribers.
+     */
+    public SseEmitter subscribe(Integer postedBy, String lastEventId) {
+        if (subscriberCount.incrementAndGet() > properties.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(properties.getTimeoutMillis());
+        Subscriber subscriber = new Subscriber(emitter, postedBy, startSequence(lastEventId),
+                System.nanoTime() - heartbeatNanos);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        subscribers.add(subscriber);
+        // The first pass sends a heartbeat right away, which commits the response headers to the client
+        LockSupport.unpark(dispatcher);
+        return emitter;
+    }
+
+    private long startSequence(String lastEventId) {
+        long head = ring.head();
+        if (lastEventId == null) {
+            return head;
+        }
+        try {
+            return Math.min(Long.parseLong(lastEventId.trim()) + 1, head);
+        } catch (NumberFormatException e) {
+            return head;
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private void dispatch() {
+        long parkNanos = Math.min(heartbeatNanos, TimeUnit.SECONDS.toNanos(1));
+        while (running) {
+            long head = ring.head();
+            long now = System.nanoTime();
+            for (Subscriber subscriber : subscribers) {
+                boolean due = subscriber.next < head || now - subscriber.lastWriteNanos >= heartbeatNanos;
+                if (due && subscriber.scheduled.compareAndSet(false, true)) {
+                    try {
+                        writers.execute(() -> drain(subscriber));
+                    } catch (RejectedExecutionException e) {
+                        return; // shutting down
+                    }
+                }
+            }
+            if (ring.head() == head) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+        }
+    }
+
+    // Runs on a writer thread, never concurrently for the same subscriber
+    private void drain(Subscriber subscriber) {
+        try {
+            boolean wrote = false;
+            for (int i = 0; i < properties.getWriteBatch(); i++) {
+                long sequence = subscriber.next;
+                MessageEvent event = ring.read(sequence);
+                if (event == null) {
+                    if (ring.status(sequence) == RingBuffer.Status.OVERRUN) {
+                        resync(subscriber);
+                        wrote = true;
+                    }
+                    break;
+                }
+                subscriber.next = sequence + 1;
+                if (subscriber.postedBy == null || subscriber.postedBy.equals(event.getMessage().getPostedBy())) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(Long.toString(sequence))
+                            .name(event.getType().eventName())
+                            .data(event.getMessage(), MediaType.APPLICATION_JSON));
+                    wrote = true;
+                }
+            }
+            long now = System.nanoTime();
+            if (!wrote && now - subscriber.lastWriteNanos >= heartbeatNanos) {
+                subscriber.emitter.send(SseEmitter.event().comment(""));
+                wrote = true;
+            }
+            if (wrote) {
+                subscriber.lastWriteNanos = now;
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter is already complete; the container cleans up the request itself
+            log.debug("Dropping message stream subscriber: {}", e.toString());
+            dropped.increment();
+            remove(subscriber);
+            return;
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        if (subscriber.next < ring.head()) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void resync(Subscriber subscriber) throws IOException {
+        resyncs.increment();
+        long head = ring.head();
+        subscriber.next = head;
+        subscriber.emitter.send(SseEmitter.event().id(Long.toString(head - 1)).name(RESYNC_EVENT).data(""));
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Integer postedBy;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long next;
+        volatile long lastWriteNanos;
+
+        Subscriber(SseEmitter emitter, Integer postedBy, long next, long lastWriteNanos) {
+            this.emitter = emitter;
+            this.postedBy = postedBy;
+            this.next = next;
+            this.lastWriteNanos = lastWriteNanos;
+        }
+    }
+}
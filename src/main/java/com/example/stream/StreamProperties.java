@@ -0,0 +1,31 @@
+package com.example.stream;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.stream")
+public class StreamProperties {
+
+    // Events kept for subscribers to catch up on; a subscriber further behind than this is resynced
+    private int ringCapacity = 4096;
+
+    // Open subscriptions allowed on this node, further subscribe requests get 503
+    private int maxSubscribers = 20000;
+
+    // Threads writing events to subscriber connections; a stalled client holds one of them until its write fails
+    private int writerThreads = 4;
+
+    // Events written to one subscriber before its writer moves on to the next one
+    private int writeBatch = 64;
+
+    // Idle connections get an SSE comment this often, which is also how dead clients are noticed
+    private long heartbeatMillis = 15000;
+
+    // Async request timeout for a subscription, 0 keeps it open until the client goes away
+    private long timeoutMillis = 0;
+}
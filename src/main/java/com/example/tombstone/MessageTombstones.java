@@ -0,0 +1,218 @@
+package com.example.tombstone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.admin.DataImportedEvent;
+import com.example.collections.IntIntHashMap;
+import com.example.entity.Message;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Soft-deleted message ids. Deleting a message only records its id here (one insert into message_tombstone) and
+ * MessageService leaves tombstoned messages out of every read, so the physical DELETE and the index maintenance
+ * on the message table move off the request path to TombstonePurger.
+ *
+ * The table is the durable copy and is loaded on startup; the in-memory set answers the per-read checks. Ids are
+ * also queued in tombstoning order, which is the order the purger removes them in. Readers skip the lock
+ * entirely while there are no tombstones.
+ *
+ * Metric: tombstones.backlog, the number of messages tombstoned but not purged yet.
+ */
+@Component
+public class MessageTombstones {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxInList;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IntIntHashMap ids = new IntIntHashMap(1024, 0);
+    private int[] queue = new int[1024];
+    private int head;
+    private int tail;
+    private volatile int size;
+
+    public MessageTombstones(JdbcTemplate jdbcTemplate, MeterRegistry registry,
+                             @Value("${app.messages.max-in-list:500}") int maxInList) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxInList = maxInList;
+        Gauge.builder("tombstones.backlog", this, MessageTombstones::size).register(registry);
+    }
+
+    // Ahead of the stores' and indexes' reloads: the bulk load emptied the table along with the messages
+    @PostConstruct
+    @EventListener(DataImportedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void load() {
+        List<Integer> stored = jdbcTemplate.queryForList("select messageId from message_tombstone order by deletedAt, messageId",
+                Integer.class);
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            head = 0;
+            tail = 0;
+            stored.forEach(this::enqueue);
+            size = ids.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Tombstones the message; false if it already was. Runs in the caller's transaction.
+    public boolean add(int messageId) {
+        if (contains(messageId)) {
+            return false;
+        }
+        try {
+            jdbcTemplate.update("insert into message_tombstone (messageId, deletedAt) values (?, ?)", messageId,
+                    System.currentTimeMillis());
+        } catch (DuplicateKeyException e) {
+            // A concurrent delete of the same message got there first
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            enqueue(messageId);
+            size = ids.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    // Drops the tombstone of an id a new row has just been inserted under (the old row was removed around the
+    // purger), in the inserting transaction: the purger then either finds no tombstone to claim, or has claimed it
+    // already and this waits for it. No SQL at all while the id has no tombstone. False if it had none.
+    public boolean revive(int messageId) {
+        if (!contains(messageId)) {
+            return false;
+        }
+        jdbcTemplate.update("delete from message_tombstone where messageId = ?", messageId);
+        forget(new int[] {messageId});
+        return true;
+    }
+
+    public boolean contains(int messageId) {
+        if (size == 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return ids.containsKey(messageId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The messages that are not tombstoned; the same list when none are
+    public List<Message> filter(List<Message> messages) {
+        if (size == 0 || messages.isEmpty()) {
+            return messages;
+        }
+        lock.readLock().lock();
+        try {
+            List<Message> live = null;
+            for (int i = 0; i < messages.size(); i++) {
+                Message message = messages.get(i);
+                boolean dead = message != null && ids.containsKey(message.getMessageId());
+                if (dead && live == null) {
+                    live = new ArrayList<>(messages.subList(0, i));
+                } else if (!dead && live != null) {
+                    live.add(message);
+                }
+            }
+            return live == null ? messages : live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit of the longest standing tombstones, oldest first
+    public int[] oldest(int limit) {
+        lock.readLock().lock();
+        try {
+            int[] oldest = new int[Math.min(limit, ids.size())];
+            int count = 0;
+            for (int i = head; i < tail && count < oldest.length; i++) {
+                if (ids.containsKey(queue[i])) {
+                    oldest[count++] = queue[i];
+                }
+            }
+            return count == oldest.length ? oldest : Arrays.copyOf(oldest, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Deletes the tombstone rows of the messages about to be purged and returns the ids that still had one, in the
+    // caller's transaction. The rows are locked first, so a bulk load replacing the table or an insert reviving an
+    // id either waits for the purge or leaves nothing for it to claim: a purge never deletes a message that was
+    // loaded or inserted again after it was tombstoned.
+    public int[] claim(int[] messageIds) {
+        List<Integer> claimed = new ArrayList<>(messageIds.length);
+        for (int from = 0; from < messageIds.length; from += maxInList) {
+            int to = Math.min(messageIds.length, from + maxInList);
+            Object[] chunk = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                chunk[i - from] = messageIds[i];
+            }
+            String inList = "(" + String.join(",", Collections.nCopies(chunk.length, "?")) + ")";
+            claimed.addAll(jdbcTemplate.queryForList("select messageId from message_tombstone where messageId in " + inList
+                    + " for update", Integer.class, chunk));
+            jdbcTemplate.update("delete from message_tombstone where messageId in " + inList, chunk);
+        }
+        return claimed.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Drops purged tombstones from memory, once the transaction that claimed them has committed
+    public void forget(int[] messageIds) {
+        lock.writeLock().lock();
+        try {
+            for (int messageId : messageIds) {
+                ids.remove(messageId);
+            }
+            // Forgotten ids are usually the front of the queue, anything else is skipped once it gets there
+            while (head < tail && !ids.containsKey(queue[head])) {
+                head++;
+            }
+            size = ids.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Caller holds the write lock
+    private void enqueue(int messageId) {
+        if (ids.put(messageId, 1) != 0) {
+            return;
+        }
+        if (tail == queue.length) {
+            int live = tail - head;
+            int[] target = live > queue.length / 2 ? new int[queue.length * 2] : queue;
+            System.arraycopy(queue, head, target, 0, live);
+            queue = target;
+            head = 0;
+            tail = live;
+        }
+        queue[tail++] = messageId;
+    }
+}
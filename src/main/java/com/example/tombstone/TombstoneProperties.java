@@ -0,0 +1,32 @@
+package com.example.tombstone;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+// Read on every purger run, so changes at runtime take effect from the next run
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.tombstones")
+public class TombstoneProperties {
+
+    // Physically remove tombstoned messages in the background; off leaves them tombstoned (still invisible)
+    private boolean purgeEnabled = true;
+
+    // Pause between purger runs
+    private long purgeIntervalMillis = 1000;
+
+    // Messages removed per batch, one DELETE transaction each
+    private int batchSize = 5000;
+
+    // Pause between the batches of one run, so a large backlog does not hold the database in one go
+    private long batchPauseMillis = 20;
+
+    // A run only starts (and keeps going) while at most this many limited requests are in flight
+    private int quietMaxInFlight = 2;
+
+    // Above this many tombstones the purger runs whether or not the app is quiet
+    private int maxBacklog = 100000;
+}
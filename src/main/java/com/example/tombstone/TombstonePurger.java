@@ -0,0 +1,160 @@
+package com.example.tombstone;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.limiter.AdaptiveConcurrencyLimiter;
+import com.example.limiter.ConcurrencyLimitFilter;
+import com.example.repository.MessageStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Background job that physically removes tombstoned messages, oldest tombstones first, in batches of batch-size:
+ * one transaction claims (deletes) the tombstone rows and deletes the messages from the store, and only after it
+ * committed are the ids dropped from MessageTombstones, so a message never reappears in between.
+ *
+ * Runs wait for a quiet period, judged by the concurrency limiter's in-flight count (with the limiter disabled
+ * every run counts as quiet), and a run stops between batches as soon as traffic comes back. Once the backlog is
+ * above max-backlog the purger stops waiting and works it down regardless.
+ *
+ * Metrics: tombstones.purged (messages removed, its rate is the purge rate), tombstones.purge.batch (time per
+ * batch) and tombstones.purge.deferred (runs skipped because the app was busy), next to tombstones.backlog.
+ */
+@Component
+public class TombstonePurger {
+
+    private static final Logger log = LoggerFactory.getLogger(TombstonePurger.class);
+
+    private final TombstoneProperties properties;
+    private final MessageTombstones tombstones;
+    private final MessageStore messageStore;
+    private final TransactionTemplate transactions;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter purged;
+    private final Counter deferred;
+    private final Timer batches;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tombstone-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TombstonePurger(TombstoneProperties properties, MessageTombstones tombstones, MessageStore messageStore,
+                           TransactionTemplate transactions, ConcurrencyLimitFilter limitFilter, MeterRegistry registry) {
+        this.properties = properties;
+        this.tombstones = tombstones;
+        this.messageStore = messageStore;
+        this.transactions = transactions;
+        this.limiter = limitFilter.getLimiter();
+        this.purged = registry.counter("tombstones.purged");
+        this.deferred = registry.counter("tombstones.purge.deferred");
+        this.batches = Timer.builder("tombstones.purge.batch").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduleNext();
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Scheduled one run at a time, so a changed interval applies from the next run
+    private void scheduleNext() {
+        try {
+            scheduler.schedule(this::run, properties.getPurgeIntervalMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void run() {
+        try {
+            if (properties.isPurgeEnabled() && tombstones.size() > 0) {
+                if (mayPurge()) {
+                    purgeOnce();
+                } else {
+                    deferred.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Purging tombstoned messages failed, retrying in {} ms", properties.getPurgeIntervalMillis(), e);
+        } finally {
+            scheduleNext();
+        }
+    }
+
+    // Quiet, or too far behind to wait for quiet
+    private boolean mayPurge() {
+        return limiter.getInFlight() <= properties.getQuietMaxInFlight() || tombstones.size() > properties.getMaxBacklog();
+    }
+
+    // Purges batch after batch while the app stays quiet (or the backlog too large); returns how many were removed
+    public synchronized int purgeOnce() {
+        long start = System.nanoTime();
+        int removed = 0;
+        while (true) {
+            int batchSize = Math.max(1, properties.getBatchSize());
+            int[] batch = tombstones.oldest(batchSize);
+            if (batch.length == 0) {
+                break;
+            }
+            int claimed = purgeBatch(batch);
+            removed += claimed;
+            if (batch.length < batchSize || claimed == 0 || !mayPurge()) {
+                break;
+            }
+            try {
+                Thread.sleep(properties.getBatchPauseMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (removed > 0) {
+            log.info("Purged {} tombstoned messages in {} ms, {} left", removed, (System.nanoTime() - start) / 1_000_000,
+                    tombstones.size());
+        }
+        return removed;
+    }
+
+    // Purges the given messages now, whether or not the app is quiet; ids without a tombstone are skipped. For
+    // callers removing scratch data of their own before they remove what it references.
+    public synchronized int purge(int[] messageIds) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        int removed = 0;
+        for (int from = 0; from < messageIds.length; from += batchSize) {
+            removed += purgeBatch(Arrays.copyOfRange(messageIds, from, Math.min(messageIds.length, from + batchSize)));
+        }
+        return removed;
+    }
+
+    // One transaction claims the batch's tombstones and deletes the claimed messages; returns how many it removed
+    private int purgeBatch(int[] batch) {
+        int[] claimed = batches.record(() -> transactions.execute(status -> {
+            int[] messageIds = tombstones.claim(batch);
+            messageStore.deleteAllById(messageIds);
+            return messageIds;
+        }));
+        // Unclaimed ids were tombstoned by a delete that has not committed yet, or were dropped by a bulk load
+        tombstones.forget(claimed);
+        purged.increment(claimed.length);
+        return claimed.length;
+    }
+}
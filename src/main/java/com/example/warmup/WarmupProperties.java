@@ -0,0 +1,31 @@
+package com.example.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "app.warmup")
+public class WarmupProperties {
+
+    // Replay a synthetic request mix before the app reports ready
+    private boolean enabled = false;
+
+    // Hard stop, whether or not latency has settled by then
+    private int maxSeconds = 60;
+
+    // Rounds of the request mix per measured batch
+    private int batchRounds = 50;
+
+    // Register + login only every this many rounds, password hashing is deliberately slow and would dominate
+    private int authEvery = 10;
+
+    // Latency has settled when the batch median and p99 each move by less than this fraction ...
+    private double tolerance = 0.10;
+
+    // ... for this many batches in a row
+    private int stableBatches = 3;
+}
@@ -0,0 +1,33 @@
+package com.example.warmup;
+
+import org.springframework.boot.availability.ReadinessState;
+
+import lombok.Getter;
+
+// Outcome of the last warm-up; latencies are nanoseconds over the timed part of the mix
+@Getter
+public class WarmupResult {
+
+    private final int rounds;
+    private final int batches;
+    private final long millis;
+    private final boolean settled;
+    private final long firstMedianNanos;
+    private final long firstP99Nanos;
+    private final long finalMedianNanos;
+    private final long finalP99Nanos;
+    private final ReadinessState readinessDuringWarmup;
+
+    public WarmupResult(int rounds, int batches, long millis, boolean settled, long firstMedianNanos, long firstP99Nanos,
+                        long finalMedianNanos, long finalP99Nanos, ReadinessState readinessDuringWarmup) {
+        this.rounds = rounds;
+        this.batches = batches;
+        this.millis = millis;
+        this.settled = settled;
+        this.firstMedianNanos = firstMedianNanos;
+        this.firstP99Nanos = firstP99Nanos;
+        this.finalMedianNanos = finalMedianNanos;
+        this.finalP99Nanos = finalP99Nanos;
+        this.readinessDuringWarmup = readinessDuringWarmup;
+    }
+}
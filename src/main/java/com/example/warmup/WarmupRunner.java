@@ -0,0 +1,229 @@
+package com.example.warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.example.exception.MessageDoesNotExistException;
+import com.example.repository.AccountRepository;
+import com.example.service.MessageService;
+import com.example.tombstone.TombstonePurger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Optional JIT warm-up (app.warmup.enabled). Spring Boot only switches readiness to ACCEPTING_TRAFFIC once every
+ * ApplicationRunner has returned, so while this runs /actuator/health/readiness reports the app as not ready and a
+ * load balancer keeps real traffic away.
+ *
+ * It replays register, login, post, get, list by author, patch and delete over real HTTP against the local
+ * connector, so Tomcat, the filters, Jackson, the controller, Hibernate and H2 all get compiled, in batches of
+ * batch-rounds rounds, until the batch median and p99 stop moving (or max-seconds is up). The scratch accounts get
+ * "warmup-" usernames with a per-run token, and the runner remembers the exact account and message ids it created.
+ * Each round deletes its message through the API; at the end any message a failed round left behind is deleted
+ * through MessageService, the warm-up's tombstones are purged right away and only then are its accounts removed.
+ * Nothing outside those ids is touched, and ids are not handed out again.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class WarmupRunner implements ApplicationRunner {
+
+    public static final String USERNAME_PREFIX = "warmup-";
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+    private static final String PASSWORD = "warmup-password";
+
+    private final WarmupProperties properties;
+    private final ApplicationContext context;
+    private final ApplicationAvailability availability;
+    private final MessageService messageService;
+    private final TombstonePurger tombstonePurger;
+    private final AccountRepository accountRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile WarmupResult lastResult;
+
+    public WarmupRunner(WarmupProperties properties, ApplicationContext context, ApplicationAvailability availability,
+                        MessageService messageService, TombstonePurger tombstonePurger, AccountRepository accountRepository) {
+        this.properties = properties;
+        this.context = context;
+        this.availability = availability;
+        this.messageService = messageService;
+        this.tombstonePurger = tombstonePurger;
+        this.accountRepository = accountRepository;
+    }
+
+    public WarmupResult getLastResult() {
+        return lastResult;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!properties.isEnabled() || !(context instanceof WebServerApplicationContext)) {
+            return;
+        }
+        ReadinessState readinessDuringWarmup = availability.getReadinessState();
+        String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/";
+        String usernamePrefix = USERNAME_PREFIX + UUID.randomUUID().toString().substring(0, 8) + "-";
+        Scratch scratch = new Scratch();
+        HttpClient client = HttpClient.newHttpClient();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(properties.getMaxSeconds());
+        int batchRounds = Math.max(1, properties.getBatchRounds());
+        long[] latencies = new long[batchRounds * 5];
+        long[] first = null;
+        long[] previous = null;
+        int stable = 0;
+        int rounds = 0;
+        int batches = 0;
+        Integer accountId = null;
+        long[] current = null;
+        try {
+            while (stable < properties.getStableBatches() && System.nanoTime() < deadline) {
+                int samples = 0;
+                for (int i = 0; i < batchRounds; i++, rounds++) {
+                    if (accountId == null || rounds % Math.max(1, properties.getAuthEvery()) == 0) {
+                        accountId = registerAndLogin(client, baseUrl, usernamePrefix + rounds, scratch);
+                    }
+                    samples = round(client, baseUrl, accountId, rounds, latencies, samples, scratch);
+                }
+                current = summarize(latencies, samples);
+                batches++;
+                if (first == null) {
+                    first = current;
+                }
+                stable = previous != null && settled(previous, current) ? stable + 1 : 0;
+                previous = current;
+            }
+        } catch (IOException | RuntimeException e) {
+            // A failed warm-up costs latency, not correctness, so the app still starts
+            log.warn("JIT warm-up aborted after {} rounds", rounds, e);
+            return;
+        } finally {
+            cleanUp(scratch);
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        lastResult = new WarmupResult(rounds, batches, millis, stable >= properties.getStableBatches(),
+                first[0], first[1], current[0], current[1], readinessDuringWarmup);
+        log.info("JIT warm-up {} after {} rounds ({} batches) in {} ms: median {} us, p99 {} us (first batch: median {} us, p99 {} us)",
+                lastResult.isSettled() ? "settled" : "stopped at max-seconds", rounds, batches, millis,
+                current[0] / 1000, current[1] / 1000, first[0] / 1000, first[1] / 1000);
+    }
+
+    private Integer registerAndLogin(HttpClient client, String baseUrl, String username, Scratch scratch)
+            throws IOException, InterruptedException {
+        String account = "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+        HttpResponse<String> registered = send(client, "POST", baseUrl + "register", account);
+        if (registered.statusCode() != 200) {
+            throw new IOException("Registering " + username + " answered " + registered.statusCode());
+        }
+        int accountId = objectMapper.readTree(registered.body()).path("accountId").asInt();
+        scratch.accountIds.add(accountId);
+        send(client, "POST", baseUrl + "login", account);
+        return accountId;
+    }
+
+    // One pass over the timed part of the mix, appending each call's latency
+    private int round(HttpClient client, String baseUrl, int accountId, int round, long[] latencies, int samples,
+                      Scratch scratch) throws IOException, InterruptedException {
+        long begin = System.nanoTime();
+        HttpResponse<String> posted = send(client, "POST", baseUrl + "messages",
+                "{\"postedBy\":" + accountId + ",\"messageText\":\"warm-up message " + round + "\",\"timePostedEpoch\":0}");
+        latencies[samples++] = System.nanoTime() - begin;
+        if (posted.statusCode() != 200) {
+            throw new IOException("Posting a message answered " + posted.statusCode());
+        }
+        int messageId = objectMapper.readTree(posted.body()).path("messageId").asInt();
+        scratch.messageIds.add(messageId);
+        scratch.liveMessageIds.add(messageId);
+
+        String message = baseUrl + "messages/" + messageId;
+        begin = System.nanoTime();
+        send(client, "GET", message, null);
+        latencies[samples++] = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        send(client, "GET", baseUrl + "accounts/" + accountId + "/messages", null);
+        latencies[samples++] = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        send(client, "PATCH", message, "{\"messageText\":\"warm-up edit " + round + "\"}");
+        latencies[samples++] = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        HttpResponse<String> deleted = send(client, "DELETE", message, null);
+        latencies[samples++] = System.nanoTime() - begin;
+        if ("1".equals(deleted.body())) {
+            scratch.liveMessageIds.remove(messageId);
+        }
+        return samples;
+    }
+
+    private static HttpResponse<String> send(HttpClient client, String method, String url, String json)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // {median, p99} in nanoseconds
+    private static long[] summarize(long[] latencies, int samples) {
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return new long[] {sorted[samples / 2], sorted[Math.min(samples - 1, (int) (samples * 0.99))]};
+    }
+
+    private boolean settled(long[] previous, long[] current) {
+        return Math.abs(current[0] - previous[0]) <= properties.getTolerance() * previous[0]
+                && Math.abs(current[1] - previous[1]) <= properties.getTolerance() * previous[1];
+    }
+
+    // Through the service and the purger, so the indexes, caches and tombstones stay in step with the tables. The
+    // accounts go last, their messages must be gone from the table first.
+    private void cleanUp(Scratch scratch) {
+        try {
+            for (Integer messageId : scratch.liveMessageIds) {
+                try {
+                    messageService.deleteMessageById(messageId);
+                } catch (MessageDoesNotExistException e) {
+                    // The round's own DELETE got through after all
+                }
+            }
+            tombstonePurger.purge(scratch.messageIds.stream().mapToInt(Integer::intValue).toArray());
+            accountRepository.deleteAllById(scratch.accountIds);
+        } catch (DataAccessException e) {
+            log.warn("JIT warm-up could not remove all of its {} accounts and {} messages", scratch.accountIds.size(),
+                    scratch.messageIds.size(), e);
+        }
+    }
+
+    // What one run created, by id
+    private static class Scratch {
+        final List<Integer> accountIds = new ArrayList<>();
+        final List<Integer> messageIds = new ArrayList<>();
+        final Set<Integer> liveMessageIds = new LinkedHashSet<>();
+    }
+}
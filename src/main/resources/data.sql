@@ -1,3 +1,4 @@
+drop table if exists message_tombstone;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -10,8 +11,15 @@ create table message (
     postedBy int,
     messageText varchar(255),
     timePostedEpoch bigint,
+    -- optimistic concurrency version, bumped by MessageRepository.updateTextIfVersion (not mapped on the entity)
+    version bigint default 0 not null,
     foreign key (postedBy) references account(accountId)
 );
+-- soft-deleted messages not purged from message yet (see MessageTombstones)
+create table message_tombstone (
+    messageId int primary key,
+    deletedAt bigint not null
+);
 
 -- Starting test values with ids of 9999 to avoid test issues
 insert into account values (9999, 'testuser1', 'password');
@@ -19,7 +27,7 @@ insert into account values (9998, 'testuser2', 'password');
 insert into account values (9997, 'testuser3', 'password');
 insert into account values (9996, 'testuser4', 'password');
 
-insert into message values (9999, 9999,'test message 1',1669947792);
-insert into message values (9997, 9997,'test message 2',1669947792);
-insert into message values (9996, 9996,'test message 3',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9999, 9999,'test message 1',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9997, 9997,'test message 2',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9996, 9996,'test message 3',1669947792);
 
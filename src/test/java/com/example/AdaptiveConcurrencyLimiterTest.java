@@ -0,0 +1,122 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.limiter.AdaptiveConcurrencyLimiter;
+import com.example.limiter.AdaptiveConcurrencyLimiter.Priority;
+import com.example.limiter.LimiterProperties;
+
+public class AdaptiveConcurrencyLimiterTest {
+    static final String READ = "GET /messages/{messageId}";
+    static final String LOGIN = "POST /login";
+
+    /**
+     * Writes only get write-share of the limit, so once that is used up writes are shed while reads and logins
+     * are still admitted.
+     */
+    @Test
+    public void writesAreShedBeforeReadsAndLogins() {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(10);
+        properties.setWriteShare(0.5);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties);
+
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(limiter.tryAcquire(Priority.WRITE));
+        }
+        Assertions.assertFalse(limiter.tryAcquire(Priority.WRITE));
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(limiter.tryAcquire(Priority.READ));
+        }
+        Assertions.assertTrue(limiter.tryAcquire(Priority.LOGIN));
+        Assertions.assertFalse(limiter.tryAcquire(Priority.READ));
+        Assertions.assertEquals(10, limiter.getInFlight());
+    }
+
+    /**
+     * When latency jumps well above its baseline under load the limit shrinks, and it grows back once latency
+     * returns to normal.
+     */
+    @Test
+    public void limitFollowsLatency() {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(50);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties);
+
+        runLoad(limiter, READ, 1000, TimeUnit.MILLISECONDS.toNanos(2));
+        double steady = limiter.getLimit();
+
+        runLoad(limiter, READ, 200, TimeUnit.MILLISECONDS.toNanos(50));
+        double congested = limiter.getLimit();
+        Assertions.assertTrue(congested < steady / 2, "steady=" + steady + " congested=" + congested);
+        Assertions.assertTrue(congested >= properties.getMinLimit());
+
+        runLoad(limiter, READ, 2000, TimeUnit.MILLISECONDS.toNanos(2));
+        Assertions.assertTrue(limiter.getLimit() > congested, "congested=" + congested + " recovered=" + limiter.getLimit());
+    }
+
+    /**
+     * A login spends ~50 ms hashing while a read takes ~2 ms. Each route is judged against its own baseline, so a
+     * steady mix of both is not mistaken for congestion, whether the limit is fully used or barely.
+     */
+    @Test
+    public void slowRoutesAreNotCongestion() {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(50);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties);
+
+        for (int i = 0; i < 1000; i++) {
+            runLoad(limiter, READ, 3, TimeUnit.MILLISECONDS.toNanos(2));
+            runLoad(limiter, LOGIN, 1, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        Assertions.assertTrue(limiter.getLimit() >= 50, "limit=" + limiter.getLimit());
+
+        for (int i = 0; i < 1000; i++) {
+            runLightLoad(limiter, READ, 3, TimeUnit.MILLISECONDS.toNanos(2));
+            runLightLoad(limiter, LOGIN, 1, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        Assertions.assertTrue(limiter.getLimit() >= 50, "limit=" + limiter.getLimit());
+    }
+
+    /**
+     * A limit cut by congestion grows back to the initial limit once latency is normal again, even when the
+     * traffic that follows only uses a few slots; light traffic does not push it any further.
+     */
+    @Test
+    public void limitRecoversAtLowUtilisation() {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(50);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties);
+
+        runLoad(limiter, READ, 1000, TimeUnit.MILLISECONDS.toNanos(2));
+        runLoad(limiter, READ, 200, TimeUnit.MILLISECONDS.toNanos(50));
+        Assertions.assertTrue(limiter.getLimit() < 25, "congested=" + limiter.getLimit());
+
+        runLightLoad(limiter, READ, 2000, TimeUnit.MILLISECONDS.toNanos(2));
+        Assertions.assertEquals(50, limiter.getLimit(), 0.001);
+    }
+
+    // Keep the limiter fully used and complete requests with the given latency
+    private static void runLoad(AdaptiveConcurrencyLimiter limiter, String route, int requests, long latencyNanos) {
+        for (int i = 0; i < requests; i++) {
+            while (limiter.tryAcquire(Priority.READ)) {
+                // fill every free slot
+            }
+            limiter.release(route, latencyNanos);
+        }
+        while (limiter.getInFlight() > 0) {
+            limiter.release(route, latencyNanos);
+        }
+    }
+
+    // One request at a time
+    private static void runLightLoad(AdaptiveConcurrencyLimiter limiter, String route, int requests, long latencyNanos) {
+        for (int i = 0; i < requests; i++) {
+            Assertions.assertTrue(limiter.tryAcquire(Priority.READ));
+            limiter.release(route, latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.monitoring.AllocationRecorder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class AllocationBudgetTest {
+    static final int WARMUP_ROUNDS = 60;
+    static final int MEASURED_ROUNDS = 30;
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.allocation.enforce-budgets=true",
+            "--app.allocation.debug-header=true",
+            "--app.password.hash-target-millis=0",
+            "--app.password.min-iterations=1000"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Once the routes are warm, no request may allocate more than its route's budget. An accidental copy of a
+     * list, a stray entity or a buffer per request shows up here as a violation.
+     */
+    @Test
+    public void routesStayWithinAllocationBudgets() throws IOException, InterruptedException {
+        AllocationRecorder recorder = app.getBean(AllocationRecorder.class);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round("warm" + i);
+        }
+        recorder.getBudgetViolations().clear();
+
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round("measured" + i);
+        }
+        Assertions.assertEquals("[]", recorder.getBudgetViolations().toString());
+
+        DistributionSummary posts = app.getBean(MeterRegistry.class).find(AllocationRecorder.ALLOCATION_METRIC)
+                .tags("method", "POST", "uri", "/messages", "handler", "postMessage").summary();
+        Assertions.assertNotNull(posts);
+        Assertions.assertEquals(WARMUP_ROUNDS + MEASURED_ROUNDS, posts.count());
+    }
+
+    private void round(String username) throws IOException, InterruptedException {
+        send("GET", "messages", null);
+        send("GET", "messages/9999", null);
+        send("GET", "messages/100", null);
+        send("GET", "accounts/9999/messages", null);
+        send("GET", "accounts/5050/messages", null);
+        HttpResponse<String> posted = send("POST", "messages",
+                "{\"postedBy\":9999,\"messageText\":\"hi\",\"timePostedEpoch\":1669947792}");
+        int messageId = objectMapper.readValue(posted.body(), Message.class).getMessageId();
+        send("PATCH", "messages/" + messageId, "{\"messageText\":\"changed\"}");
+        send("DELETE", "messages/" + messageId, null);
+        send("POST", "register", "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+        send("POST", "login", "{\"username\":\"testuser1\",\"password\":\"password\"}");
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), method + " " + path);
+        Assertions.assertTrue(response.headers().firstValue("X-Allocated-Bytes").isPresent(), method + " " + path);
+        return response;
+    }
+}
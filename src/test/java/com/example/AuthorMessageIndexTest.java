@@ -0,0 +1,62 @@
+package com.example;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.collections.IntObjectHashMap;
+import com.example.collections.SortedIntList;
+
+public class AuthorMessageIndexTest {
+
+    /**
+     * The primitive author -> ids structures behind AuthorMessageIndex must agree with their boxed java.util
+     * equivalents under a random mix of inserts (mostly ascending, like sequence ids) and removals.
+     */
+    @Test
+    public void primitiveIndexMatchesBoxedReference() {
+        Random random = new Random(11);
+        IntObjectHashMap<SortedIntList> index = new IntObjectHashMap<>(4);
+        Map<Integer, TreeSet<Integer>> reference = new TreeMap<>();
+
+        int nextId = 1;
+        for (int i = 0; i < 50_000; i++) {
+            int author = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                TreeSet<Integer> expected = reference.get(author);
+                SortedIntList actual = index.get(author);
+                if (expected == null) {
+                    Assertions.assertNull(actual);
+                    continue;
+                }
+                int victim = expected.first();
+                expected.remove(victim);
+                Assertions.assertTrue(actual.remove(victim));
+                Assertions.assertFalse(actual.contains(victim));
+                if (expected.isEmpty()) {
+                    reference.remove(author);
+                    index.remove(author);
+                }
+            } else {
+                int messageId = random.nextInt(20) == 0 ? random.nextInt(nextId) + 1 : nextId++;
+                boolean added = reference.computeIfAbsent(author, key -> new TreeSet<>()).add(messageId);
+                SortedIntList list = index.get(author);
+                if (list == null) {
+                    list = new SortedIntList();
+                    index.put(author, list);
+                }
+                Assertions.assertEquals(added, list.add(messageId));
+            }
+        }
+
+        Assertions.assertEquals(reference.size(), index.size());
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : reference.entrySet()) {
+            int[] expected = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            Assertions.assertArrayEquals(expected, index.get(entry.getKey()).toArray());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.admin.BulkTransferService;
+import com.example.admin.TransferCounts;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BulkTransferTest {
+    static final int MESSAGES = 200_000;
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.admin.enabled=true"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Export, change the data, import the export again: the data is back to the snapshot, new ids continue after the
+     * highest imported one and the per-author index reflects the imported rows.
+     */
+    @Test
+    public void exportImportRoundTrip() throws IOException, InterruptedException {
+        send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"before export\",\"timePostedEpoch\":1669947800}");
+        List<Message> snapshot = messages("messages");
+        byte[] dump = webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/admin/export")).build(),
+                HttpResponse.BodyHandlers.ofByteArray()).body();
+
+        send("DELETE", "messages/9999", null);
+        send("POST", "messages", "{\"postedBy\":9998,\"messageText\":\"after export\",\"timePostedEpoch\":1669947900}");
+
+        HttpResponse<String> imported = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/import"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(dump))
+                .header("Content-Type", "application/octet-stream")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, imported.statusCode());
+        Assertions.assertTrue(imported.body().contains("\"accounts\":4"));
+        Assertions.assertTrue(imported.body().contains("\"messages\":4"));
+
+        Assertions.assertEquals(snapshot, messages("messages"));
+        Assertions.assertEquals(List.of(new Message(1, 9999, "before export", 1669947800L),
+                new Message(9999, 9999, "test message 1", 1669947792L)), messages("accounts/9999/messages"));
+        Assertions.assertEquals(List.of(), messages("accounts/9998/messages"));
+
+        HttpResponse<String> posted = send("POST", "messages", "{\"postedBy\":9998,\"messageText\":\"after import\",\"timePostedEpoch\":1669948000}");
+        Assertions.assertEquals(10000, new ObjectMapper().readValue(posted.body(), Message.class).getMessageId());
+    }
+
+    /**
+     * A dump that is not one, or that breaks off halfway, is rejected and the current data stays as it was.
+     */
+    @Test
+    public void malformedDumpLeavesDataUntouched() throws IOException, InterruptedException {
+        List<Message> before = messages("messages");
+        byte[] dump = webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/admin/export")).build(),
+                HttpResponse.BodyHandlers.ofByteArray()).body();
+
+        Assertions.assertEquals(400, importBytes("not a dump".getBytes()).statusCode());
+        Assertions.assertEquals(400, importBytes(Arrays.copyOf(dump, dump.length - 10)).statusCode());
+        Assertions.assertEquals(before, messages("messages"));
+        Assertions.assertEquals(200, send("POST", "login", "{\"username\":\"testuser1\",\"password\":\"password\"}").statusCode());
+    }
+
+    /**
+     * Round trip of a larger table straight through the service, reporting rows per second each way.
+     */
+    @Test
+    public void bulkRoundTripThroughput() throws IOException {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        jdbcTemplate.batchUpdate("insert into message (messageId, postedBy, messageText, timePostedEpoch) values (?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        statement.setInt(1, 100_000 + i);
+                        statement.setInt(2, 9996 + i % 4);
+                        statement.setString(3, "bulk message number " + i + " with some typical length text");
+                        statement.setLong(4, 1669947792L + i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return MESSAGES;
+                    }
+                });
+
+        BulkTransferService bulkTransfer = app.getBean(BulkTransferService.class);
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        TransferCounts exported = bulkTransfer.export(dump);
+        TransferCounts imported = bulkTransfer.importData(new ByteArrayInputStream(dump.toByteArray()));
+
+        System.out.printf("%d messages: export %d ms (%.0f rows/s), import %d ms (%.0f rows/s), %d bytes%n",
+                exported.getMessages(), exported.getMillis(), exported.getMessages() * 1000.0 / Math.max(1, exported.getMillis()),
+                imported.getMillis(), imported.getMessages() * 1000.0 / Math.max(1, imported.getMillis()), dump.size());
+        Assertions.assertEquals(MESSAGES + 3, exported.getMessages());
+        Assertions.assertEquals(MESSAGES + 3, imported.getMessages());
+        Assertions.assertEquals(MESSAGES + 3, jdbcTemplate.queryForObject("select count(*) from message", Integer.class));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from information_schema.table_constraints "
+                + "where table_name = 'MESSAGE' and constraint_type = 'FOREIGN KEY'", Integer.class));
+    }
+
+    /**
+     * Without app.admin.enabled the endpoints do not exist.
+     */
+    @Test
+    public void adminEndpointsAreOffByDefault() throws IOException, InterruptedException {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class);
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/export")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(404, response.statusCode());
+    }
+
+    /**
+     * The columnar store never writes back to the message table, so export and import are refused there instead of
+     * dumping (and then restoring) a stale table.
+     */
+    @Test
+    public void transferIsRefusedWithoutTheTableBackedStore() throws IOException, InterruptedException {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, "--app.admin.enabled=true", "--spring.profiles.active=columnar");
+        send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"columnar only\",\"timePostedEpoch\":1669947800}");
+        List<Message> before = messages("messages");
+
+        HttpResponse<String> exported = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/export")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(409, exported.statusCode());
+        Assertions.assertEquals("", exported.body());
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        Assertions.assertThrows(IllegalStateException.class, () -> app.getBean(BulkTransferService.class).export(dump));
+        Assertions.assertEquals(0, dump.size());
+
+        Assertions.assertEquals(409, importBytes(new byte[] {0x53, 0x4D, 0x44, 0x31}).statusCode());
+        Assertions.assertEquals(before, messages("messages"));
+    }
+
+    private List<Message> messages(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path)).build(), HttpResponse.BodyHandlers.ofString());
+        return new ObjectMapper().readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private HttpResponse<String> importBytes(byte[] body) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/import"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/octet-stream")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,186 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.ColumnarMessageStore;
+import com.example.repository.MessageStore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ColumnarMessageStoreBenchmarkTest {
+    static final int MESSAGES = 50_000;
+    static final int LOOKUPS = 20_000;
+
+    ApplicationContext app;
+
+    @BeforeEach
+    public void setUp() {
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Memory per message and findById latency of the columnar engine against the default H2/JPA path, over the
+     * same rows. Both engines must return the same messages.
+     */
+    @Test
+    public void columnarVersusH2() {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        MessageStore jpaStore = app.getBean(MessageStore.class);
+
+        long heapBefore = usedHeap();
+        jdbcTemplate.batchUpdate("insert into message (messageId, postedBy, messageText, timePostedEpoch) values (?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        statement.setInt(1, 100_000 + i);
+                        statement.setInt(2, 9996 + i % 4);
+                        statement.setString(3, "benchmark message number " + i + " with some typical length text");
+                        statement.setLong(4, 1669947792L + i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return MESSAGES;
+                    }
+                });
+        long h2Bytes = usedHeap() - heapBefore;
+
+        ColumnarMessageStore columnar = new ColumnarMessageStore(jdbcTemplate, 1024, 1 << 20, 0.5);
+        columnar.load();
+        Assertions.assertEquals(MESSAGES + 3, columnar.size());
+
+        long jpaNanos = timeLookups(jpaStore, 42);
+        long columnarNanos = timeLookups(columnar, 42);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            Integer id = 100_000 + random.nextInt(MESSAGES);
+            Message expected = jpaStore.findById(id).orElseThrow();
+            Assertions.assertEquals(expected, columnar.findById(id).orElseThrow());
+        }
+
+        System.out.printf("%d messages: H2 ~%d bytes/message, columnar %d bytes/message%n",
+                MESSAGES, h2Bytes / MESSAGES, columnar.getMemoryBytes() / columnar.size());
+        System.out.printf("findById x%d: H2/JPA %.2f us/lookup, columnar %.3f us/lookup%n",
+                LOOKUPS, jpaNanos / 1e3 / LOOKUPS, columnarNanos / 1e3 / LOOKUPS);
+        Assertions.assertTrue(columnarNanos < jpaNanos);
+    }
+
+    /**
+     * Edits and deletes leave text behind in the slabs; once it is more than half of them the store compacts, so
+     * memory stays bounded under churn and every message still reads back with its latest text and version.
+     */
+    @Test
+    public void editsAndDeletesAreCompacted() {
+        int slabBytes = 4096;
+        ColumnarMessageStore columnar = new ColumnarMessageStore(app.getBean(JdbcTemplate.class), 16, slabBytes, 0.5);
+        columnar.load();
+        int seeded = columnar.size();
+        int[] ids = new int[200];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = columnar.save(new Message(null, 9999, "churn message " + i + " as first posted", 1669947800L + i)).getMessageId();
+        }
+        long memory = columnar.getMemoryBytes();
+
+        for (int edit = 1; edit <= 10; edit++) {
+            for (int i = 0; i < ids.length; i++) {
+                Assertions.assertEquals(1, columnar.updateTextIfVersion(ids[i], "churn message " + i + " edit " + edit, (long) edit - 1));
+            }
+        }
+        for (int i = 0; i < ids.length; i += 2) {
+            Assertions.assertTrue(columnar.deleteById(ids[i]).isPresent());
+        }
+
+        Assertions.assertTrue(columnar.getCompactions() > 0);
+        Assertions.assertTrue(columnar.getMemoryBytes() <= memory + 2 * slabBytes,
+                "before churn " + memory + " after " + columnar.getMemoryBytes());
+        Assertions.assertEquals(seeded + ids.length / 2, columnar.size());
+        Assertions.assertEquals(seeded + ids.length / 2, columnar.findAll().size());
+        for (int i = 0; i < ids.length; i++) {
+            if (i % 2 == 0) {
+                Assertions.assertTrue(columnar.findById(ids[i]).isEmpty());
+            } else {
+                Assertions.assertEquals("churn message " + i + " edit 10", columnar.findById(ids[i]).orElseThrow().getMessageText());
+                Assertions.assertEquals(10L, columnar.findVersionById(ids[i]).orElseThrow());
+            }
+        }
+        Assertions.assertEquals(9999, columnar.findById(9999).orElseThrow().getMessageId());
+    }
+
+    /**
+     * With the columnar profile active the whole message API runs on the in-memory engine.
+     */
+    @Test
+    public void columnarProfileServesMessageApi() throws IOException, InterruptedException {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, "--spring.profiles.active=columnar");
+        Assertions.assertTrue(app.getBean(MessageStore.class) instanceof ColumnarMessageStore);
+
+        HttpClient webClient = HttpClient.newHttpClient();
+        HttpResponse<String> posted = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"héllo columns\",\"timePostedEpoch\":1669947800}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, posted.statusCode());
+        Message created = new ObjectMapper().readValue(posted.body(), Message.class);
+        Assertions.assertEquals(10000, created.getMessageId());
+
+        HttpResponse<String> patched = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/10000"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"edited\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, patched.statusCode());
+
+        HttpResponse<String> byUser = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages")).build(), HttpResponse.BodyHandlers.ofString());
+        List<Message> messages = new ObjectMapper().readValue(byUser.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(new Message(9999, 9999, "test message 1", 1669947792L),
+                new Message(10000, 9999, "edited", 1669947800L)), messages);
+    }
+
+    private static long timeLookups(MessageStore store, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < LOOKUPS / 4; i++) {
+            store.findById(100_000 + random.nextInt(MESSAGES));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            store.findById(100_000 + random.nextInt(MESSAGES));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.repository.AccountRepository;
+
+public class ConcurrentRegistrationTest {
+    static final int REGISTRATIONS = 2000;
+    static final int CLIENT_THREADS = 64;
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Cheap hashes, a deep hashing queue and no concurrency limiter, so the test exercises the registration path
+     * rather than PBKDF2 or load shedding.
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.password.hash-target-millis=0",
+            "--app.password.min-iterations=1000",
+            "--app.password.queue-capacity=" + REGISTRATIONS,
+            "--app.limiter.enabled=false",
+            "--app.sql.debug-headers=true"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Thousands of parallel registrations for the same username: exactly one may win with 200, every other
+     * request must get 409 and only one row may exist afterwards. Each request, winner or not, runs a sequence call
+     * and the insert, where check-then-insert also ran a username lookup first.
+     */
+    @Test
+    public void parallelSameNameRegistrationsHaveExactlyOneWinner() throws Exception {
+        String json = "{\"username\":\"contested\",\"password\":\"password\"}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger conflict = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+        AtomicInteger maxStatements = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            results.add(clients.submit(() -> {
+                start.await();
+                HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+                int statements = Integer.parseInt(response.headers().firstValue("X-SQL-Statements").orElse("-1"));
+                maxStatements.accumulateAndGet(statements, Math::max);
+                switch (response.statusCode()) {
+                    case 200: ok.incrementAndGet(); break;
+                    case 409: conflict.incrementAndGet(); break;
+                    default: other.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(1, ok.get(), "Exactly one registration should succeed");
+        Assertions.assertEquals(REGISTRATIONS - 1, conflict.get(), "Every other registration should be a 409");
+        Assertions.assertEquals(0, other.get(), "No registration may fail with anything but 409");
+        Assertions.assertEquals(1, app.getBean(AccountRepository.class).findAll().stream()
+                .filter(account -> account.getUsername().equals("contested")).count());
+        Assertions.assertEquals(2, maxStatements.get(), "A sequence call and one insert per registration, no lookup");
+    }
+}
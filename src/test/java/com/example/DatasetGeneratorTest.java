@@ -0,0 +1,109 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.admin.DatasetGenerator;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DatasetGeneratorTest {
+    static final int ACCOUNTS = 1000;
+    static final int MESSAGES = 100_000;
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.generator.accounts=" + ACCOUNTS,
+            "--app.generator.messages=" + MESSAGES,
+            "--app.admin.enabled=true"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The startup dataset has the requested size and shape: Zipf authors (account 1 writes about 1 / H(1000) = 13%
+     * of all messages), posting times ascending within the range, text lengths 1 to 255. The app serves it
+     * straight away, including logins and the per-author index.
+     */
+    @Test
+    public void generatesSkewedDatasetAtStartup() throws IOException, InterruptedException {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Assertions.assertEquals(ACCOUNTS, jdbcTemplate.queryForObject("select count(*) from account", Integer.class));
+        Assertions.assertEquals(MESSAGES, jdbcTemplate.queryForObject("select count(*) from message", Integer.class));
+
+        Map<String, Object> top = jdbcTemplate.queryForMap(
+                "select postedBy, count(*) as messages from message group by postedBy order by messages desc limit 1");
+        double topShare = ((Number) top.get("messages")).doubleValue() / MESSAGES;
+        Assertions.assertEquals(1, ((Number) top.get("postedBy")).intValue());
+        Assertions.assertTrue(topShare > 0.11 && topShare < 0.16, "share of account 1: " + topShare);
+
+        Map<String, Object> lengths = jdbcTemplate.queryForMap(
+                "select min(length(messageText)) as shortest, max(length(messageText)) as longest from message");
+        Assertions.assertTrue(((Number) lengths.get("shortest")).intValue() >= 1);
+        Assertions.assertTrue(((Number) lengths.get("longest")).intValue() <= 255);
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from message m join message n "
+                + "on n.messageId = m.messageId + 1 where n.timePostedEpoch < m.timePostedEpoch", Integer.class));
+
+        HttpResponse<String> byAuthor = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages")).build(), HttpResponse.BodyHandlers.ofString());
+        List<Message> messages = new ObjectMapper().readValue(byAuthor.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(((Number) top.get("messages")).intValue(), messages.size());
+
+        HttpResponse<String> login = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"user7\",\"password\":\"" + DatasetGenerator.PASSWORD + "\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, login.statusCode());
+    }
+
+    /**
+     * The same seed gives the same messages, a different seed different ones.
+     */
+    @Test
+    public void sameSeedSameDataset() throws IOException, InterruptedException {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        String query = "select messageId || ':' || postedBy || ':' || timePostedEpoch || ':' || messageText from message order by messageId";
+        List<String> first = jdbcTemplate.queryForList(query, String.class);
+
+        long start = System.nanoTime();
+        HttpResponse<String> generated = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/generate?accounts=" + ACCOUNTS + "&messages=" + MESSAGES + "&seed=42"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString());
+        long elapsed = System.nanoTime() - start;
+        Assertions.assertEquals(200, generated.statusCode());
+        Assertions.assertEquals(first, jdbcTemplate.queryForList(query, String.class));
+        System.out.printf("Generated %d accounts and %d messages in %d ms (%.0f rows/s)%n",
+                ACCOUNTS, MESSAGES, elapsed / 1_000_000, (ACCOUNTS + MESSAGES) / (elapsed / 1e9));
+
+        app.getBean(DatasetGenerator.class).generate(ACCOUNTS, MESSAGES, 43);
+        Assertions.assertNotEquals(first, jdbcTemplate.queryForList(query, String.class));
+    }
+}
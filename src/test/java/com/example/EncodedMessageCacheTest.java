@@ -0,0 +1,123 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.serialization.EncodedMessageCache;
+import com.example.serialization.SerializationProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class EncodedMessageCacheTest {
+    static final int MESSAGES = 20_000;
+    static final int ROUNDS = 20;
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {
+            "--app.generator.accounts=100",
+            "--app.generator.messages=" + MESSAGES,
+            "--app.allocation.debug-header=true",
+            "--app.limiter.enabled=false"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Responses assembled from cached bytes are identical to Jackson's, and edits and deletes show up at once.
+     */
+    @Test
+    public void cachedEncodingMatchesJacksonAndFollowsWrites() throws IOException, InterruptedException {
+        SerializationProperties properties = app.getBean(SerializationProperties.class);
+        EncodedMessageCache cache = app.getBean(EncodedMessageCache.class);
+
+        properties.setCacheEnabled(false);
+        String uncached = get("accounts/1/messages").body();
+        String uncachedOne = get("messages/1").body();
+        properties.setCacheEnabled(true);
+        Assertions.assertEquals(uncached, get("accounts/1/messages").body());
+        long misses = cache.getMisses();
+        Assertions.assertEquals(uncached, get("accounts/1/messages").body());
+        Assertions.assertEquals(misses, cache.getMisses());
+        Assertions.assertEquals(uncachedOne, get("messages/1").body());
+        Assertions.assertEquals(uncachedOne, get("messages/1").body());
+
+        send("PATCH", "messages/1", "{\"messageText\":\"edited\"}");
+        Assertions.assertEquals("edited", objectMapper.readValue(get("messages/1").body(), Message.class).getMessageText());
+        Assertions.assertTrue(get("messages?ids=1").body().contains("\"edited\""));
+        send("DELETE", "messages/1", null);
+        Assertions.assertEquals("[null]", get("messages?ids=1").body());
+        Assertions.assertEquals("", get("messages/1").body());
+        Assertions.assertEquals(2, get("messages?ids=1,2&fields=messageId").body().split("null", -1).length);
+    }
+
+    /**
+     * GET /messages for the whole table, with and without the cache: per-request allocation and time.
+     */
+    @Test
+    public void listResponsesAllocateLessFromCache() throws IOException, InterruptedException {
+        SerializationProperties properties = app.getBean(SerializationProperties.class);
+
+        properties.setCacheEnabled(false);
+        long[] jackson = measure();
+        properties.setCacheEnabled(true);
+        get("messages");
+        long[] cached = measure();
+
+        System.out.printf("GET /messages (%d messages): jackson %d bytes allocated, %d us; cached %d bytes allocated, %d us%n",
+                MESSAGES, jackson[0], jackson[1] / 1000, cached[0], cached[1] / 1000);
+        Assertions.assertTrue(cached[0] < jackson[0], cached[0] + " >= " + jackson[0]);
+    }
+
+    // Lowest allocation and time over ROUNDS requests, after as many warm-up requests
+    private long[] measure() throws IOException, InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            get("messages");
+        }
+        long bytes = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            HttpResponse<String> response = get("messages");
+            nanos = Math.min(nanos, System.nanoTime() - start);
+            bytes = Math.min(bytes, Long.parseLong(response.headers().firstValue("X-Allocated-Bytes").orElseThrow()));
+        }
+        return new long[] {bytes, nanos};
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send("GET", path, null);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.FeedPage;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class FeedTest {
+    static final int MESSAGES = 20_000;
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {
+            "--app.generator.accounts=100",
+            "--app.generator.messages=" + MESSAGES,
+            "--app.sql.debug-headers=true",
+            "--app.limiter.enabled=false"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Paging through the feed of a few authors yields exactly their messages, newest first, without gaps or
+     * repeats, one batch query per page.
+     */
+    @Test
+    public void pagesMergeAuthorsNewestFirst() throws IOException, InterruptedException {
+        List<Message> expected = new ArrayList<>();
+        for (int author : new int[] {1, 7, 42}) {
+            expected.addAll(Arrays.asList(objectMapper.readValue(get("accounts/" + author + "/messages").body(), Message[].class)));
+        }
+        expected.sort(Comparator.comparing(Message::getMessageId).reversed());
+
+        List<Message> paged = new ArrayList<>();
+        Integer cursor = null;
+        int pages = 0;
+        do {
+            HttpResponse<String> response = get("feed?authors=1,7,42,7&limit=37" + (cursor == null ? "" : "&before=" + cursor));
+            Assertions.assertEquals(200, response.statusCode());
+            Assertions.assertEquals("1", response.headers().firstValue("X-SQL-Statements").orElse("missing"));
+            FeedPage page = objectMapper.readValue(response.body(), FeedPage.class);
+            Assertions.assertTrue(page.getMessages().size() <= 37);
+            paged.addAll(page.getMessages());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        Assertions.assertEquals(expected, paged);
+        Assertions.assertEquals((expected.size() + 36) / 37, pages);
+
+        FeedPage unknown = objectMapper.readValue(get("feed?authors=5050").body(), FeedPage.class);
+        Assertions.assertTrue(unknown.getMessages().isEmpty());
+        Assertions.assertNull(unknown.getNextCursor());
+        Assertions.assertEquals(400, get("feed?authors=1&limit=0").statusCode());
+        Assertions.assertEquals(400, get("feed?authors=1&limit=100000").statusCode());
+    }
+
+    /**
+     * A page of the heaviest authors (the head of the Zipf distribution, thousands of messages) against a page of
+     * light ones: the page size, not the authors' message counts, decides the cost.
+     */
+    @Test
+    public void pageCostFollowsPageSize() throws IOException, InterruptedException {
+        String heavy = "feed?authors=1,2,3&limit=20";
+        String light = "feed?authors=98,99,100&limit=20";
+        for (int round = 0; round < 50; round++) {
+            get(heavy);
+            get(light);
+        }
+        long heavyNanos = best(heavy);
+        long lightNanos = best(light);
+        int heavyMessages = 0;
+        for (int author = 1; author <= 3; author++) {
+            heavyMessages += objectMapper.readValue(get("accounts/" + author + "/messages").body(), Message[].class).length;
+        }
+        System.out.printf("feed page of 20: authors with %d messages %d us, light authors %d us%n",
+                heavyMessages, heavyNanos / 1000, lightNanos / 1000);
+        Assertions.assertEquals(20, objectMapper.readValue(get(heavy).body(), FeedPage.class).getMessages().size());
+    }
+
+    private long best(String path) throws IOException, InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            get(path);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/" + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A recording with the app's events enabled captures each service call with its route, entity id, row count and
+     * duration, the repository calls beneath it and the author index hits and misses.
+     */
+    @Test
+    public void recordingCapturesServiceRepositoryAndCacheEvents() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("social-media", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.ServiceOperation").withThreshold(Duration.ZERO);
+            recording.enable("com.example.RepositoryOperation").withThreshold(Duration.ZERO);
+            recording.enable("com.example.CacheLookup").withThreshold(Duration.ZERO);
+            recording.start();
+
+            send("GET", "messages/9999", null);
+            send("GET", "accounts/9999/messages", null);
+            send("GET", "accounts/5050/messages", null);
+            send("DELETE", "messages/9999", null);
+
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        RecordedEvent get = single(events, "com.example.ServiceOperation", "getMessageById");
+        Assertions.assertEquals("MessageService", get.getString("service"));
+        Assertions.assertEquals("GET /messages/{messageId}", get.getString("route"));
+        Assertions.assertEquals(9999, get.getLong("entityId"));
+        Assertions.assertEquals(1, get.getInt("rowCount"));
+        Assertions.assertTrue(get.getDuration().toNanos() > 0);
+
+        RecordedEvent byAuthor = single(events, "com.example.ServiceOperation", "findMessagesByAccountId", 9999);
+        Assertions.assertEquals(1, byAuthor.getInt("rowCount"));
+        RecordedEvent unknownAuthor = single(events, "com.example.ServiceOperation", "findMessagesByAccountId", 5050);
+        Assertions.assertEquals("AccountDoesNotExistException", unknownAuthor.getString("exception"));
+
+        // Deleting only tombstones the message, the row is removed later by the purger
+        RecordedEvent delete = single(events, "com.example.ServiceOperation", "deleteMessageById");
+        Assertions.assertEquals("DELETE /messages/{messageId}", delete.getString("route"));
+        Assertions.assertEquals(9999, delete.getLong("entityId"));
+        Assertions.assertEquals(1, delete.getInt("rowCount"));
+        Assertions.assertTrue(named(events, "com.example.RepositoryOperation").stream()
+                .noneMatch(e -> "deleteById".equals(e.getString("operation"))));
+
+        List<RecordedEvent> lookups = named(events, "com.example.CacheLookup");
+        Assertions.assertEquals(2, lookups.size());
+        Assertions.assertTrue(lookups.stream().anyMatch(e -> e.getLong("key") == 9999 && e.getBoolean("hit")));
+        Assertions.assertTrue(lookups.stream().anyMatch(e -> e.getLong("key") == 5050 && !e.getBoolean("hit")));
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name, String operation) {
+        List<RecordedEvent> matching = named(events, name).stream()
+                .filter(e -> operation.equals(e.getString("operation"))).collect(Collectors.toList());
+        Assertions.assertEquals(1, matching.size(), name + " " + operation);
+        return matching.get(0);
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name, String operation, long entityId) {
+        List<RecordedEvent> matching = named(events, name).stream()
+                .filter(e -> operation.equals(e.getString("operation")) && e.getLong("entityId") == entityId)
+                .collect(Collectors.toList());
+        Assertions.assertEquals(1, matching.size(), name + " " + operation + " " + entityId);
+        return matching.get(0);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.archive.MessageArchive;
+import com.example.archive.MessageArchiver;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageArchiveTest {
+    static final String DIRECTORY = "target/archive-test";
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.archive.enabled=true",
+            "--app.archive.directory=" + DIRECTORY,
+            "--app.archive.max-age-seconds=86400",
+            "--app.archive.interval-seconds=3600",
+            "--app.archive.block-bytes=64"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The seeded messages are years old, so one archiver run moves them all out of the table into a segment file
+     * while a fresh post stays hot. The API cannot tell: lookups, listings, edits and deletes work across both tiers.
+     */
+    @Test
+    public void archivedMessagesStayReadableAndWritable() throws IOException, InterruptedException {
+        HttpResponse<String> posted = send("POST", "messages",
+                "{\"postedBy\":9999,\"messageText\":\"fresh\",\"timePostedEpoch\":" + System.currentTimeMillis() / 1000 + "}");
+        int freshId = objectMapper.readValue(posted.body(), Message.class).getMessageId();
+
+        Assertions.assertEquals(3, app.getBean(MessageArchiver.class).archiveOnce());
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from message", Integer.class));
+        Assertions.assertEquals(1, app.getBean(MessageArchive.class).getSegmentCount());
+        try (Stream<java.nio.file.Path> files = Files.list(Paths.get(DIRECTORY))) {
+            Assertions.assertEquals(1, files.filter(file -> file.toString().endsWith(".seg")).count());
+        }
+
+        Assertions.assertEquals(new Message(9999, 9999, "test message 1", 1669947792L),
+                objectMapper.readValue(send("GET", "messages/9999", null).body(), Message.class));
+        List<Message> all = objectMapper.readValue(send("GET", "messages", null).body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(Arrays.asList(freshId, 9996, 9997, 9999), ids(all));
+        List<Message> byAuthor = objectMapper.readValue(send("GET", "accounts/9999/messages", null).body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(Arrays.asList(freshId, 9999), ids(byAuthor));
+
+        // Editing moves the message back into the table
+        Assertions.assertEquals("1", send("PATCH", "messages/9997", "{\"messageText\":\"edited\"}").body());
+        Assertions.assertEquals("edited", objectMapper.readValue(send("GET", "messages/9997", null).body(), Message.class).getMessageText());
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject("select count(*) from message", Integer.class));
+
+        Assertions.assertEquals("1", send("DELETE", "messages/9996", null).body());
+        Assertions.assertEquals("", send("DELETE", "messages/9996", null).body());
+        Assertions.assertEquals("", send("GET", "messages/9996", null).body());
+        all = objectMapper.readValue(send("GET", "messages", null).body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(Arrays.asList(freshId, 9997, 9999), ids(all));
+
+        // The edited copy is archived again, in a newer segment, and the older copy stays dead
+        Assertions.assertEquals(1, app.getBean(MessageArchiver.class).archiveOnce());
+        Assertions.assertEquals("edited", objectMapper.readValue(send("GET", "messages/9997", null).body(), Message.class).getMessageText());
+        Assertions.assertEquals("", send("GET", "messages/9996", null).body());
+    }
+
+    private static List<Integer> ids(List<Message> messages) {
+        return messages.stream().map(Message::getMessageId).collect(Collectors.toList());
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import com.example.dto.MessageFields;
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+public class MessageEncodingTest {
+    static final int MESSAGES = 20_000;
+    static final String CBOR = "application/cbor";
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    ObjectMapper cborMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        cborMapper = new CBORMapper();
+        String[] args = new String[] {
+            "--app.generator.accounts=100",
+            "--app.generator.messages=" + MESSAGES,
+            "--app.limiter.enabled=false"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * ?fields= leaves the other properties out of the response on every message route, is pushed down to the
+     * store's select list, and rejects unknown names.
+     */
+    @Test
+    public void sparseFieldsetsProjectResponsesAndQueries() throws IOException, InterruptedException {
+        List<Map<String, Object>> all = objectMapper.readValue(get("messages?fields=messageId,messageText", null).body(),
+                new TypeReference<List<Map<String, Object>>>() {});
+        Assertions.assertEquals(MESSAGES, all.size());
+        for (Map<String, Object> message : all) {
+            Assertions.assertEquals(2, message.size());
+            Assertions.assertTrue(message.containsKey("messageId") && message.containsKey("messageText"));
+        }
+
+        Map<String, Object> one = objectMapper.readValue(get("messages/1?fields=messageText", null).body(),
+                new TypeReference<Map<String, Object>>() {});
+        Assertions.assertEquals(1, one.size());
+        Assertions.assertEquals(objectMapper.readValue(get("messages/1", null).body(), Message.class).getMessageText(),
+                one.get("messageText"));
+        for (String path : new String[] {"accounts/1/messages", "messages?ids=1,2", "messages/recent?limit=5"}) {
+            String separator = path.contains("?") ? "&" : "?";
+            List<Map<String, Object>> projected = objectMapper.readValue(get(path + separator + "fields=postedBy", null).body(),
+                    new TypeReference<List<Map<String, Object>>>() {});
+            Assertions.assertFalse(projected.isEmpty(), path);
+            projected.forEach(message -> Assertions.assertEquals(1, message.size(), path));
+        }
+        Assertions.assertEquals(400, get("messages?fields=messageId,password", null).statusCode());
+        Assertions.assertEquals(400, get("accounts/1/messages?fields=nope", null).statusCode());
+
+        MessageFields fields = MessageFields.parse("postedBy");
+        List<Message> stored = app.getBean(MessageStore.class).findAllById(new int[] {1, 2, 3}, fields);
+        Assertions.assertEquals(3, stored.size());
+        for (Message message : stored) {
+            Assertions.assertNotNull(message.getMessageId());
+            Assertions.assertNotNull(message.getPostedBy());
+            Assertions.assertNull(message.getMessageText());
+            Assertions.assertNull(message.getTimePostedEpoch());
+        }
+    }
+
+    /**
+     * Accept: application/cbor gets the same messages in CBOR, requests can be sent in CBOR too, and the payload
+     * sizes and encoding cost of the variants are reported.
+     */
+    @Test
+    public void cborIsNegotiatedAndSmallerThanJson() throws IOException, InterruptedException {
+        HttpResponse<byte[]> json = get("messages", null);
+        HttpResponse<byte[]> cbor = get("messages", CBOR);
+        Assertions.assertEquals(CBOR, cbor.headers().firstValue("Content-Type").orElse(""));
+        Message[] fromJson = objectMapper.readValue(json.body(), Message[].class);
+        Assertions.assertArrayEquals(fromJson, cborMapper.readValue(cbor.body(), Message[].class));
+
+        byte[] posted = cborMapper.writeValueAsBytes(new Message(1, "sent as cbor", 1669947792L));
+        HttpResponse<byte[]> created = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Content-Type", CBOR).header("Accept", CBOR)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(posted)).build(), HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(200, created.statusCode());
+        Assertions.assertEquals("sent as cbor", cborMapper.readValue(created.body(), Message.class).getMessageText());
+
+        int jsonFields = get("messages?fields=messageId,messageText", null).body().length;
+        int cborFields = get("messages?fields=messageId,messageText", CBOR).body().length;
+        System.out.printf("%d messages: json %d bytes, cbor %d bytes, json ?fields=messageId,messageText %d bytes, cbor %d bytes%n",
+                fromJson.length, json.body().length, cbor.body().length, jsonFields, cborFields);
+        Assertions.assertTrue(cbor.body().length < json.body().length);
+        Assertions.assertTrue(jsonFields < json.body().length);
+        Assertions.assertTrue(cborFields < jsonFields);
+
+        // Encoding cost with the application's own mappers, so the Message filter and configuration are included
+        ObjectMapper appJson = app.getBean(ObjectMapper.class);
+        ObjectMapper appCbor = app.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+        List<Message> messages = List.of(fromJson);
+        for (int round = 0; round < 20; round++) {
+            appJson.writeValueAsBytes(messages);
+            appCbor.writeValueAsBytes(messages);
+        }
+        long jsonNanos = encode(appJson, messages);
+        long cborNanos = encode(appCbor, messages);
+        System.out.printf("encoding %d messages: json %d us, cbor %d us%n", messages.size(), jsonNanos / 1000, cborNanos / 1000);
+    }
+
+    private static long encode(ObjectMapper mapper, List<Message> messages) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            mapper.writeValueAsBytes(messages);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private HttpResponse<byte[]> get(String path, String accept) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/" + path));
+        if (accept != null) {
+            request.header("Accept", accept);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
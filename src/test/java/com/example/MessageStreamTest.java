@@ -0,0 +1,161 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.stream.MessageStreamBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageStreamTest {
+    static final int IDLE_SUBSCRIBERS = 200;
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.stream.ring-capacity=8"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A subscriber sees created, updated and deleted events with the message as data, and a postedBy filter only
+     * lets that author's messages through.
+     */
+    @Test
+    public void streamsCreateUpdateDelete() throws Exception {
+        BlockingQueue<String> all = subscribe("messages/stream", null);
+        BlockingQueue<String> other = subscribe("messages/stream?postedBy=9998", null);
+
+        send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"live\",\"timePostedEpoch\":1669947800}");
+        send("PATCH", "messages/1", "{\"messageText\":\"edited\"}");
+        send("DELETE", "messages/1", null);
+
+        Assertions.assertEquals("created", nextEvent(all).get(0));
+        List<String> updated = nextEvent(all);
+        Assertions.assertEquals("updated", updated.get(0));
+        Assertions.assertEquals(new Message(1, 9999, "edited", 1669947800L), new ObjectMapper().readValue(updated.get(2), Message.class));
+        Assertions.assertEquals("deleted", nextEvent(all).get(0));
+        Thread.sleep(500);
+        Assertions.assertTrue(other.stream().noneMatch(line -> line.startsWith("event:")));
+    }
+
+    /**
+     * Reconnecting with a Last-Event-ID that is still in the ring replays what was missed; one that has already been
+     * overwritten gets a resync event instead.
+     */
+    @Test
+    public void lastEventIdReplaysOrResyncs() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"missed " + i + "\",\"timePostedEpoch\":1669947800}");
+        }
+        BlockingQueue<String> replay = subscribe("messages/stream", "0");
+        List<String> first = nextEvent(replay);
+        Assertions.assertEquals(List.of("created", "1"), first.subList(0, 2));
+        Assertions.assertTrue(first.get(2).contains("missed 1"));
+        Assertions.assertTrue(nextEvent(replay).get(2).contains("missed 2"));
+
+        for (int i = 0; i < 10; i++) {
+            send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"flood " + i + "\",\"timePostedEpoch\":1669947800}");
+        }
+        BlockingQueue<String> lapped = subscribe("messages/stream", "0");
+        Assertions.assertEquals(MessageStreamBroadcaster.RESYNC_EVENT, nextEvent(lapped).get(0));
+    }
+
+    /**
+     * Many idle subscriptions are held without a thread each, and one post reaches all of them.
+     */
+    @Test
+    public void fansOutToManyIdleSubscribers() throws Exception {
+        List<BlockingQueue<String>> streams = new ArrayList<>();
+        for (int i = 0; i < IDLE_SUBSCRIBERS; i++) {
+            streams.add(subscribe("messages/stream", null));
+        }
+        Assertions.assertEquals(IDLE_SUBSCRIBERS, app.getBean(MessageStreamBroadcaster.class).getSubscriberCount());
+
+        send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"everyone\",\"timePostedEpoch\":1669947800}");
+        for (BlockingQueue<String> stream : streams) {
+            Assertions.assertEquals("created", nextEvent(stream).get(0));
+        }
+    }
+
+    // Lines of the stream, read on a background thread; returns once the response headers are in
+    private BlockingQueue<String> subscribe(String path, String lastEventId) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        HttpResponse<Stream<String>> response = webClient.send(builder.build(), HttpResponse.BodyHandlers.ofLines());
+        Assertions.assertEquals(200, response.statusCode());
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> {
+            try {
+                response.body().forEach(lines::add);
+            } catch (UncheckedIOException e) {
+                // connection closed when the app shuts down
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        return lines;
+    }
+
+    // Next named event as [event name, id, data], skipping heartbeat comments
+    private static List<String> nextEvent(BlockingQueue<String> lines) throws InterruptedException {
+        String name = null;
+        String id = null;
+        String data = null;
+        while (true) {
+            String line = lines.poll(10, TimeUnit.SECONDS);
+            Assertions.assertNotNull(line, "timed out waiting for an event");
+            if (line.isEmpty()) {
+                if (name != null) {
+                    return List.of(name, id, data);
+                }
+            } else if (line.startsWith("event:")) {
+                name = line.substring(6);
+            } else if (line.startsWith("id:")) {
+                id = line.substring(3);
+            } else if (line.startsWith("data:")) {
+                data = line.substring(5);
+            }
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
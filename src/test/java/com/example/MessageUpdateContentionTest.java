@@ -0,0 +1,129 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.metrics.ContentionMetrics;
+import com.example.service.MessageService;
+
+public class MessageUpdateContentionTest {
+    static final int THREADS = 8;
+    static final int UPDATES_PER_THREAD = 50;
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.messages.update-max-retries=100", "--app.limiter.enabled=false"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * GET returns the version as an ETag, a PATCH with the current ETag succeeds and bumps it, and a PATCH with the
+     * now stale ETag is rejected with 412 and the current ETag.
+     */
+    @Test
+    public void conditionalPatchWithIfMatch() throws IOException, InterruptedException {
+        HttpResponse<String> get = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999")).build(), HttpResponse.BodyHandlers.ofString());
+        String eTag = get.headers().firstValue("ETag").orElseThrow();
+        Assertions.assertEquals("\"0\"", eTag);
+
+        HttpResponse<String> first = patch(9999, "first edit", eTag);
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals("\"1\"", first.headers().firstValue("ETag").orElseThrow());
+
+        HttpResponse<String> stale = patch(9999, "lost edit", eTag);
+        Assertions.assertEquals(412, stale.statusCode());
+        Assertions.assertEquals("\"1\"", stale.headers().firstValue("ETag").orElseThrow());
+        Assertions.assertEquals("first edit", app.getBean(MessageService.class).getMessageById(9999).getMessage().getMessageText());
+        Assertions.assertEquals(1, app.getBean(ContentionMetrics.class).getConflicts(9999));
+
+        HttpResponse<String> reread = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertTrue(reread.body().contains("\"messageText\":\"first edit\""));
+        Assertions.assertEquals("\"1\"", reread.headers().firstValue("ETag").orElseThrow());
+
+        Assertions.assertEquals(400, patch(5050, "missing", "\"0\"").statusCode());
+    }
+
+    /**
+     * Contention benchmark: many threads PATCH the same message without If-Match. Every update must land exactly
+     * once (version == number of successful updates) and throughput / conflict rate are reported.
+     */
+    @Test
+    public void hotMessageContentionBenchmark() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger ok = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(clients.submit(() -> {
+                start.await();
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    if (patch(9999, "thread " + thread + " edit " + i, null).statusCode() == 200) {
+                        ok.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+
+        ContentionMetrics metrics = app.getBean(ContentionMetrics.class);
+        int total = THREADS * UPDATES_PER_THREAD;
+        System.out.printf("%d PATCHes on one message from %d threads: %.0f updates/s, %d conflicts (%.1f%%), %d retries%n",
+                total, THREADS, total / (elapsed / 1e9), metrics.getConflicts(9999),
+                100.0 * metrics.getConflicts(9999) / total, metrics.getRetries(9999));
+
+        Assertions.assertEquals(total, ok.get());
+        Assertions.assertEquals(total, app.getBean(MessageService.class).getMessageById(9999).getVersion());
+    }
+
+    private HttpResponse<String> patch(int messageId, String text, String ifMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"" + text + "\"}"))
+                .header("Content-Type", "application/json");
+        if (ifMatch != null) {
+            builder.header("If-Match", ifMatch);
+        }
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
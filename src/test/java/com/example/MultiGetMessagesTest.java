@@ -0,0 +1,116 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MultiGetMessagesTest {
+    static final int MESSAGES = 2_000;
+    static final int FEED_SIZE = 200;
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {
+            "--app.generator.accounts=50",
+            "--app.generator.messages=" + MESSAGES,
+            "--app.messages.max-batch-ids=" + FEED_SIZE,
+            "--app.messages.max-in-list=128",
+            "--app.sql.debug-headers=true",
+            "--app.limiter.enabled=false"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The batch answers in the requested order, repeats duplicates, marks missing ids with null and costs one
+     * statement per max-in-list ids; oversized batches are rejected.
+     */
+    @Test
+    public void batchLookupKeepsOrderAndMarksMissing() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("messages?ids=3,999999,1,3");
+        Assertions.assertEquals(200, response.statusCode());
+        Message[] messages = objectMapper.readValue(response.body(), Message[].class);
+        Assertions.assertEquals(4, messages.length);
+        Assertions.assertEquals(3, messages[0].getMessageId());
+        Assertions.assertNull(messages[1]);
+        Assertions.assertEquals(1, messages[2].getMessageId());
+        Assertions.assertEquals(messages[0], messages[3]);
+        Assertions.assertEquals(objectMapper.readValue(get("messages/1").body(), Message.class), messages[2]);
+        Assertions.assertEquals("1", response.headers().firstValue("X-SQL-Statements").orElse("missing"));
+
+        Assertions.assertEquals("2", get("messages?ids=" + ids(FEED_SIZE)).headers().firstValue("X-SQL-Statements").orElse("missing"));
+        Assertions.assertEquals(400, get("messages?ids=" + ids(FEED_SIZE + 1)).statusCode());
+        Assertions.assertEquals(400, get("messages?ids=1,x").statusCode());
+    }
+
+    /**
+     * Rendering a feed of FEED_SIZE messages: one request per id against one batch request.
+     */
+    @Test
+    public void batchLookupReplacesPerIdRoundTrips() throws IOException, InterruptedException {
+        for (int round = 0; round < 5; round++) {
+            renderOneByOne();
+            get("messages?ids=" + ids(FEED_SIZE));
+        }
+
+        long start = System.nanoTime();
+        Message[] oneByOne = renderOneByOne();
+        long oneByOneMicros = (System.nanoTime() - start) / 1000;
+        start = System.nanoTime();
+        Message[] batched = objectMapper.readValue(get("messages?ids=" + ids(FEED_SIZE)).body(), Message[].class);
+        long batchedMicros = (System.nanoTime() - start) / 1000;
+
+        System.out.printf("%d messages: %d requests in %d us, 1 batch request in %d us%n",
+                FEED_SIZE, FEED_SIZE, oneByOneMicros, batchedMicros);
+        Assertions.assertArrayEquals(oneByOne, batched);
+        Assertions.assertTrue(batchedMicros < oneByOneMicros, batchedMicros + " us >= " + oneByOneMicros + " us");
+    }
+
+    private Message[] renderOneByOne() throws IOException, InterruptedException {
+        Message[] messages = new Message[FEED_SIZE];
+        for (int i = 0; i < FEED_SIZE; i++) {
+            messages[i] = objectMapper.readValue(get("messages/" + (MESSAGES - i)).body(), Message.class);
+        }
+        return messages;
+    }
+
+    // Newest ids first, the way a feed lists them
+    private static String ids(int count) {
+        StringJoiner ids = new StringJoiner(",");
+        for (int i = 0; i < count; i++) {
+            ids.add(String.valueOf(MESSAGES - i));
+        }
+        return ids.toString();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/" + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Account;
+import com.example.repository.AccountRepository;
+import com.example.security.PasswordHasher;
+
+public class PasswordHashingTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Registering a new user should persist a salted hash, never the plaintext password.
+     */
+    @Test
+    public void registrationStoresHash() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("register", "{\"username\":\"hashuser\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, response.statusCode());
+
+        Account stored = app.getBean(AccountRepository.class).findByUsername("hashuser").orElseThrow();
+        Assertions.assertNotEquals("password", stored.getPassword());
+        Assertions.assertTrue(app.getBean(PasswordHasher.class).isHashed(stored.getPassword()));
+
+        Assertions.assertEquals(200, post("login", "{\"username\":\"hashuser\",\"password\":\"password\"}").statusCode());
+        Assertions.assertEquals(401, post("login", "{\"username\":\"hashuser\",\"password\":\"pass404\"}").statusCode());
+    }
+
+    /**
+     * A seeded plaintext row should be rehashed on its first successful login and keep working afterwards.
+     */
+    @Test
+    public void plaintextPasswordMigratesOnLogin() throws IOException, InterruptedException {
+        AccountRepository accountRepository = app.getBean(AccountRepository.class);
+        Assertions.assertEquals("password", accountRepository.findByUsername("testuser2").orElseThrow().getPassword());
+
+        Assertions.assertEquals(200, post("login", "{\"username\":\"testuser2\",\"password\":\"password\"}").statusCode());
+        String migrated = accountRepository.findByUsername("testuser2").orElseThrow().getPassword();
+        Assertions.assertTrue(app.getBean(PasswordHasher.class).isHashed(migrated));
+
+        Assertions.assertEquals(200, post("login", "{\"username\":\"testuser2\",\"password\":\"password\"}").statusCode());
+        Assertions.assertEquals(migrated, accountRepository.findByUsername("testuser2").orElseThrow().getPassword());
+    }
+
+    /**
+     * A login for an unknown username does the same hashing work as one with a wrong password, so it takes about as
+     * long; a corrupt stored hash is a failed login, not a server error.
+     */
+    @Test
+    public void unknownUsersAndCorruptHashesFailLikeWrongPasswords() throws IOException, InterruptedException {
+        Assertions.assertEquals(200, post("register", "{\"username\":\"timeduser\",\"password\":\"password\"}").statusCode());
+        long wrongPassword = Long.MAX_VALUE;
+        long unknownUser = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            Assertions.assertEquals(401, post("login", "{\"username\":\"timeduser\",\"password\":\"wrong\"}").statusCode());
+            wrongPassword = Math.min(wrongPassword, System.nanoTime() - start);
+            start = System.nanoTime();
+            Assertions.assertEquals(401, post("login", "{\"username\":\"nobody\",\"password\":\"wrong\"}").statusCode());
+            unknownUser = Math.min(unknownUser, System.nanoTime() - start);
+        }
+        System.out.printf("failed login: wrong password %d us, unknown username %d us%n", wrongPassword / 1000, unknownUser / 1000);
+        Assertions.assertTrue(unknownUser * 2 > wrongPassword, unknownUser + " vs " + wrongPassword);
+
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into account (accountId, username, password) values (5001, 'corrupt1', '$pbkdf2-sha256$many$AAAA$AAAA')");
+        jdbcTemplate.update("insert into account (accountId, username, password) values (5002, 'corrupt2', '$pbkdf2-sha256$1000$not base64$AAAA')");
+        Assertions.assertEquals(401, post("login", "{\"username\":\"corrupt1\",\"password\":\"password\"}").statusCode());
+        Assertions.assertEquals(401, post("login", "{\"username\":\"corrupt2\",\"password\":\"password\"}").statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
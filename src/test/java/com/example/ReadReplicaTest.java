@@ -0,0 +1,219 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.coalescing.SingleFlight;
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.replica.ReplicaContext;
+import com.example.replica.ReplicaNode;
+import com.example.replica.ReplicaSet;
+import com.example.service.MessageService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class ReadReplicaTest {
+    static final long APPLY_DELAY_MILLIS = 1000;
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.replica.enabled=true",
+            "--app.replica.apply-delay-millis=" + APPLY_DELAY_MILLIS,
+            "--app.replica.max-lag-millis=10000"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Reads without a token are served by the lagging replica and do not see a fresh write yet; the writer's
+     * consistency token makes its own reads see it straight away. Once the replica has caught up, everyone does.
+     */
+    @Test
+    public void replicaReadsAreEventuallyConsistentWithReadYourWrites() throws IOException, InterruptedException {
+        ReplicaNode replica = app.getBean(ReplicaSet.class).getReplicas().get(0);
+        awaitCaughtUp(replica);
+        double replicaReadsBefore = routed("replica-0");
+
+        HttpResponse<String> posted = send("POST", "messages",
+                "{\"postedBy\":9999,\"messageText\":\"replicated\",\"timePostedEpoch\":1669947792}", null);
+        Assertions.assertEquals(200, posted.statusCode());
+        String token = posted.headers().firstValue(ReplicaContext.TOKEN_HEADER).orElse(null);
+        Assertions.assertNotNull(token);
+        int messageId = objectMapper.readValue(posted.body(), Message.class).getMessageId();
+
+        Assertions.assertFalse(containsMessage(send("GET", "messages", null, null), messageId));
+        Assertions.assertTrue(routed("replica-0") > replicaReadsBefore);
+        Assertions.assertTrue(replica.getPendingCount() > 0);
+        Assertions.assertTrue(containsMessage(send("GET", "messages", null, token), messageId));
+        Assertions.assertEquals(200, send("GET", "messages/" + messageId, null, token).statusCode());
+
+        awaitCaughtUp(replica);
+        Assertions.assertTrue(replica.isHealthy());
+        Assertions.assertEquals(0, replica.getLagMillis());
+        Assertions.assertTrue(replica.getAppliedLsn() >= Long.parseLong(token));
+        Assertions.assertTrue(containsMessage(send("GET", "messages", null, null), messageId));
+    }
+
+    /**
+     * Writes that read before they write (delete, versioned update) work on the primary even while the replica
+     * has not seen the row yet.
+     */
+    @Test
+    public void writesReadThePrimary() throws IOException, InterruptedException {
+        HttpResponse<String> posted = send("POST", "messages",
+                "{\"postedBy\":9999,\"messageText\":\"short lived\",\"timePostedEpoch\":1669947792}", null);
+        int messageId = objectMapper.readValue(posted.body(), Message.class).getMessageId();
+
+        HttpResponse<String> updated = send("PATCH", "messages/" + messageId, "{\"messageText\":\"changed\"}", null);
+        Assertions.assertEquals(200, updated.statusCode());
+        Assertions.assertEquals("1", updated.body());
+        HttpResponse<String> deleted = send("DELETE", "messages/" + messageId, null, null);
+        Assertions.assertEquals(200, deleted.statusCode());
+        Assertions.assertEquals("1", deleted.body());
+
+        ReplicaNode replica = app.getBean(ReplicaSet.class).getReplicas().get(0);
+        awaitCaughtUp(replica);
+        Assertions.assertTrue(replica.isHealthy());
+        Assertions.assertFalse(containsMessage(send("GET", "messages", null, null), messageId));
+    }
+
+    /**
+     * Reads holding a consistency token never join a shared load: it may have been started by a request without one
+     * and served by a replica that has not applied the token's write yet. Reads without a token still coalesce.
+     */
+    @Test
+    public void readsWithATokenDoNotJoinSharedLoads() throws IOException, InterruptedException {
+        HttpResponse<String> posted = send("POST", "messages",
+                "{\"postedBy\":9999,\"messageText\":\"own write\",\"timePostedEpoch\":1669947792}", null);
+        String token = posted.headers().firstValue(ReplicaContext.TOKEN_HEADER).orElseThrow();
+        int messageId = objectMapper.readValue(posted.body(), Message.class).getMessageId();
+        double messageLoads = coalesced(MessageService.MESSAGE_BY_ID);
+        double authorLoads = coalesced(MessageService.MESSAGES_BY_AUTHOR);
+
+        Assertions.assertEquals(200, send("GET", "messages/" + messageId, null, token).statusCode());
+        Assertions.assertTrue(containsMessage(send("GET", "accounts/9999/messages", null, token), messageId));
+        Assertions.assertEquals(messageLoads, coalesced(MessageService.MESSAGE_BY_ID));
+        Assertions.assertEquals(authorLoads, coalesced(MessageService.MESSAGES_BY_AUTHOR));
+
+        send("GET", "messages/" + messageId, null, null);
+        send("GET", "accounts/9999/messages", null, null);
+        Assertions.assertEquals(messageLoads + 1, coalesced(MessageService.MESSAGE_BY_ID));
+        Assertions.assertEquals(authorLoads + 1, coalesced(MessageService.MESSAGES_BY_AUTHOR));
+    }
+
+    /**
+     * A new account has the same id on the replica as on the primary: a message posted as that account passes the
+     * account check on the replica, and replica reads show the account and the message under the primary's ids.
+     */
+    @Test
+    public void registeredAccountsKeepTheirIdOnReplicas() throws IOException, InterruptedException {
+        ReplicaNode replica = app.getBean(ReplicaSet.class).getReplicas().get(0);
+        // Draw a few ids on the primary first, so its sequence is ahead of the replica's
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(200, send("POST", "messages",
+                    "{\"postedBy\":9999,\"messageText\":\"filler\",\"timePostedEpoch\":1669947792}", null).statusCode());
+        }
+        HttpResponse<String> registered = send("POST", "register", "{\"username\":\"replicated\",\"password\":\"password\"}", null);
+        Assertions.assertEquals(200, registered.statusCode());
+        int accountId = objectMapper.readValue(registered.body(), Account.class).getAccountId();
+        awaitCaughtUp(replica);
+
+        double replicaReadsBefore = routed("replica-0");
+        HttpResponse<String> posted = send("POST", "messages",
+                "{\"postedBy\":" + accountId + ",\"messageText\":\"from replica\",\"timePostedEpoch\":1669947792}", null);
+        Assertions.assertEquals(200, posted.statusCode());
+        Assertions.assertTrue(routed("replica-0") > replicaReadsBefore);
+        int messageId = objectMapper.readValue(posted.body(), Message.class).getMessageId();
+        awaitCaughtUp(replica);
+
+        List<Account> accounts = objectMapper.readValue(send("GET", "users", null, null).body(),
+                new TypeReference<List<Account>>(){});
+        Assertions.assertEquals(accountId, accounts.stream().filter(account -> account.getUsername().equals("replicated"))
+                .findFirst().orElseThrow().getAccountId());
+        List<Message> messages = objectMapper.readValue(send("GET", "messages", null, null).body(),
+                new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(accountId, messages.stream().filter(message -> message.getMessageId() == messageId)
+                .findFirst().orElseThrow().getPostedBy());
+    }
+
+    /**
+     * A write that draws from a sequence inside the statement would replay with the replica's own ids, so the
+     * primary refuses it and nothing reaches the log.
+     */
+    @Test
+    public void writesDrawingFromASequenceAreRejected() {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        long lsn = app.getBean(ReplicaSet.class).getLastLsn();
+        Assertions.assertThrows(DataAccessException.class, () -> jdbcTemplate.update(
+                "insert into account (accountId, username, password) values (next value for hibernate_sequence, ?, ?)",
+                "sequenced", "password"));
+        Assertions.assertEquals(lsn, app.getBean(ReplicaSet.class).getLastLsn());
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from account where username = 'sequenced'",
+                Integer.class));
+    }
+
+    private void awaitCaughtUp(ReplicaNode replica) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * APPLY_DELAY_MILLIS;
+        while (replica.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(0, replica.getPendingCount());
+    }
+
+    private double routed(String target) {
+        return app.getBean(MeterRegistry.class).get("replica.routed").tags("target", target, "kind", "read").counter().count();
+    }
+
+    // Requests that went through the group's single-flight, whether they loaded or shared a load
+    private double coalesced(String group) {
+        return app.getBean(MeterRegistry.class).get(SingleFlight.REQUESTS_METRIC).tag("group", group).counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+
+    private boolean containsMessage(HttpResponse<String> response, int messageId) throws IOException {
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        return messages.stream().anyMatch(message -> message.getMessageId() == messageId);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json, String token) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            request.header(ReplicaContext.TOKEN_HEADER, token);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RecentMessagesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.messages.recent.capacity=4", "--app.sql.debug-headers=true"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The ring is seeded with the newest messages, follows posts, edits and deletes, evicts the oldest once full,
+     * and never touches the database.
+     */
+    @Test
+    public void recentMessagesFollowWritesWithoutQueries() throws IOException, InterruptedException {
+        Assertions.assertEquals(Arrays.asList(9999, 9997, 9996), recentIds(null));
+        Assertions.assertEquals(Arrays.asList(9999, 9997), recentIds(2));
+        Assertions.assertEquals(400, send("GET", "messages/recent?limit=0", null).statusCode());
+
+        int first = post("first");
+        int second = post("second");
+        Assertions.assertEquals(Arrays.asList(second, first, 9999, 9997), recentIds(null));
+        Assertions.assertEquals(Arrays.asList(second, first, 9999, 9997), recentIds(100));
+
+        send("PATCH", "messages/" + first, "{\"messageText\":\"edited\"}");
+        send("DELETE", "messages/9999", null);
+        List<Message> recent = recent(null);
+        Assertions.assertEquals(3, recent.size());
+        Assertions.assertEquals(new Message(first, 9999, "edited", 1669947792L), recent.get(1));
+        Assertions.assertEquals(9997, recent.get(2).getMessageId());
+
+        HttpResponse<String> response = send("GET", "messages/recent", null);
+        Assertions.assertEquals("0", response.headers().firstValue("X-SQL-Statements").orElse("missing"));
+    }
+
+    private List<Integer> recentIds(Integer limit) throws IOException, InterruptedException {
+        List<Integer> messageIds = new ArrayList<>();
+        for (Message message : recent(limit)) {
+            messageIds.add(message.getMessageId());
+        }
+        return messageIds;
+    }
+
+    private List<Message> recent(Integer limit) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", "messages/recent" + (limit == null ? "" : "?limit=" + limit), null);
+        Assertions.assertEquals(200, response.statusCode());
+        return Arrays.asList(objectMapper.readValue(response.body(), Message[].class));
+    }
+
+    private int post(String text) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9999,\"messageText\":\"" + text + "\",\"timePostedEpoch\":1669947792}";
+        return objectMapper.readValue(send("POST", "messages", json).body(), Message.class).getMessageId();
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
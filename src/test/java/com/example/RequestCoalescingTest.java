@@ -0,0 +1,138 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.coalescing.CoalescingProperties;
+import com.example.coalescing.SingleFlight;
+import com.example.monitoring.RequestTraceFilter;
+import com.example.service.MessageService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class RequestCoalescingTest {
+    static final int ACCOUNTS = 100;
+    static final int MESSAGES = 5_000;
+    static final int CLIENTS = 32;
+    static final int REQUESTS_PER_CLIENT = 20;
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.generator.accounts=" + ACCOUNTS,
+            "--app.generator.messages=" + MESSAGES,
+            "--app.sql.debug-headers=true",
+            "--app.limiter.enabled=false"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Many clients hammer the same author listing (the Zipf head, thousands of messages) and the same message.
+     * With coalescing most of them are served by a load another request already started; without it every
+     * request loads on its own. Loads are counted as the SQL statements the requests ran (a request that joined
+     * another one's load runs none), next to the coalescing counters. Every response is complete either way.
+     */
+    @Test
+    public void concurrentReadsShareLoads() throws Exception {
+        MeterRegistry registry = app.getBean(MeterRegistry.class);
+        CoalescingProperties properties = app.getBean(CoalescingProperties.class);
+
+        properties.setEnabled(false);
+        long[] uncoalesced = hammer(registry);
+        properties.setEnabled(true);
+        long[] coalesced = hammer(registry);
+
+        int requests = CLIENTS * REQUESTS_PER_CLIENT;
+        System.out.printf("%d author listings: %d SQL statements in %d ms without coalescing, %d in %d ms with (ratio %.2f)%n",
+                requests, uncoalesced[0], uncoalesced[4], coalesced[0], coalesced[4],
+                registry.get(SingleFlight.RATIO_METRIC).tag("group", MessageService.MESSAGES_BY_AUTHOR).gauge().value());
+        System.out.printf("%d message lookups: %d SQL statements without coalescing, %d with%n", requests, uncoalesced[1], coalesced[1]);
+
+        // Uncoalesced, every request loads on its own; coalesced, requests that joined a load ran no SQL at all
+        Assertions.assertEquals(requests, uncoalesced[2]);
+        Assertions.assertEquals(requests, uncoalesced[3]);
+        Assertions.assertEquals(requests, uncoalesced[1]);
+        Assertions.assertTrue(coalesced[0] < uncoalesced[0], "author listing SQL statements: " + coalesced[0]);
+        Assertions.assertTrue(coalesced[1] < uncoalesced[1], "message SQL statements: " + coalesced[1]);
+    }
+
+    // Over one round of concurrent requests for author 1's listing and message 1: the SQL statements each route ran,
+    // the store loads each coalescing group counted, and the wall time
+    private long[] hammer(MeterRegistry registry) throws Exception {
+        String expectedListing = get("accounts/1/messages").body();
+        String expectedMessage = get("messages/1").body();
+        double authorLoads = loads(registry, MessageService.MESSAGES_BY_AUTHOR);
+        double messageLoads = loads(registry, MessageService.MESSAGE_BY_ID);
+        AtomicLong authorStatements = new AtomicLong();
+        AtomicLong messageStatements = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int client = 0; client < CLIENTS; client++) {
+            results.add(clients.submit(() -> {
+                for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                    HttpResponse<String> listing = get("accounts/1/messages");
+                    Assertions.assertEquals(expectedListing, listing.body());
+                    authorStatements.addAndGet(statements(listing));
+                    HttpResponse<String> message = get("messages/1");
+                    Assertions.assertEquals(expectedMessage, message.body());
+                    messageStatements.addAndGet(statements(message));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        return new long[] {
+            authorStatements.get(),
+            messageStatements.get(),
+            (long) (loads(registry, MessageService.MESSAGES_BY_AUTHOR) - authorLoads),
+            (long) (loads(registry, MessageService.MESSAGE_BY_ID) - messageLoads),
+            elapsed / 1_000_000
+        };
+    }
+
+    private static long statements(HttpResponse<String> response) {
+        return Long.parseLong(response.headers().firstValue(RequestTraceFilter.STATEMENTS_HEADER).orElseThrow());
+    }
+
+    private static double loads(MeterRegistry registry, String group) {
+        return registry.get(SingleFlight.REQUESTS_METRIC).tag("group", group).tag("outcome", "load").counter().count();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/" + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class ServerTimingTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.timing.server-timing-header=true"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Every phase should be reported, and the nested phases can never be longer than the phase they run in.
+     */
+    @Test
+    public void serverTimingHeaderHasPhaseBreakdown() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+
+        Map<String, Double> phases = new HashMap<>();
+        for (String metric : response.headers().firstValue("Server-Timing").orElseThrow().split(",")) {
+            String[] parts = metric.trim().split(";dur=");
+            phases.put(parts[0], Double.valueOf(parts[1]));
+        }
+        Assertions.assertEquals(7, phases.size(), phases.toString());
+        Assertions.assertTrue(phases.get("repository") > 0, phases.toString());
+        Assertions.assertTrue(phases.get("db") <= phases.get("repository"), phases.toString());
+        Assertions.assertTrue(phases.get("repository") <= phases.get("service"), phases.toString());
+        Assertions.assertTrue(phases.get("service") <= phases.get("handler"), phases.toString());
+        Assertions.assertTrue(phases.get("handler") + phases.get("serialization") <= phases.get("total"), phases.toString());
+    }
+}
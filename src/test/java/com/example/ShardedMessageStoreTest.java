@@ -0,0 +1,125 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+import com.example.repository.ShardedMessageStore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ShardedMessageStoreTest {
+    static final int WRITER_THREADS = 8;
+    static final int WRITES_PER_THREAD = 1_000; // stays below the seeded ids (9996+), like the default store
+
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--spring.profiles.active=sharded", "--app.messages.sharded.shards=4",
+                "--app.sql.debug-headers=true"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The API behaves exactly as on a single database: seeded messages are served, new ids come from the shared
+     * sequence, the global listing is merged back into id order, and edits and deletes find their shard. Statements
+     * run on the scatter pool count against the request like any other.
+     */
+    @Test
+    public void shardedStoreServesTheApi() throws IOException, InterruptedException {
+        Assertions.assertTrue(app.getBean(MessageStore.class) instanceof ShardedMessageStore);
+
+        HttpResponse<String> posted = send("POST", "messages", "{\"postedBy\":9998,\"messageText\":\"sharded\",\"timePostedEpoch\":1669947800}");
+        Assertions.assertEquals(200, posted.statusCode());
+        Message message = objectMapper.readValue(posted.body(), Message.class);
+        Assertions.assertEquals(new Message(1, 9998, "sharded", 1669947800L), message);
+
+        HttpResponse<String> listed = send("GET", "messages", null);
+        Assertions.assertEquals("4", listed.headers().firstValue("X-SQL-Statements").orElse("missing"));
+        List<Message> all = objectMapper.readValue(listed.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(Arrays.asList(1, 9996, 9997, 9999), all.stream().map(Message::getMessageId).collect(java.util.stream.Collectors.toList()));
+
+        List<Message> byAuthor = objectMapper.readValue(send("GET", "accounts/9998/messages", null).body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(message), byAuthor);
+
+        Assertions.assertEquals("1", send("PATCH", "messages/1", "{\"messageText\":\"edited\"}").body());
+        Assertions.assertEquals("edited", objectMapper.readValue(send("GET", "messages/1", null).body(), Message.class).getMessageText());
+        Assertions.assertEquals("1", send("DELETE", "messages/1", null).body());
+        Assertions.assertEquals("", send("GET", "messages/1", null).body());
+    }
+
+    /**
+     * Concurrent writers spread over the shards; every message lands on its author's shard and the global listing
+     * returns all of them in id order.
+     */
+    @Test
+    public void concurrentWritesSpreadOverShards() throws Exception {
+        ShardedMessageStore store = app.getBean(ShardedMessageStore.class);
+        int before = store.findAll().size();
+        ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int thread = 0; thread < WRITER_THREADS; thread++) {
+            int author = 9996 + thread % 4;
+            results.add(writers.submit(() -> {
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    store.save(new Message(author, "load " + i, 1669947800L + i));
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        writers.shutdown();
+        int writes = WRITER_THREADS * WRITES_PER_THREAD;
+        System.out.printf("%d writes over %d shards with %d threads in %d ms (%.0f writes/s), shard sizes %s%n",
+                writes, store.getShardCount(), WRITER_THREADS, elapsed / 1_000_000, writes / (elapsed / 1e9),
+                Arrays.toString(store.getShardSizes()));
+
+        List<Message> all = store.findAll();
+        Assertions.assertEquals(before + writes, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            Assertions.assertTrue(all.get(i - 1).getMessageId() < all.get(i).getMessageId());
+        }
+        Assertions.assertEquals(before + writes, Arrays.stream(store.getShardSizes()).sum());
+        Assertions.assertEquals(WRITES_PER_THREAD * 2 + 1, store.findByPostedBy(9997).size());
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
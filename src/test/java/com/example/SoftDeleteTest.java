@@ -0,0 +1,169 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.example.tombstone.TombstoneProperties;
+import com.example.tombstone.TombstonePurger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class SoftDeleteTest {
+    static final int MESSAGES = 20_000;
+
+    ApplicationContext app;
+    HttpClient webClient = HttpClient.newHttpClient();
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    private void start(String... extraArgs) throws InterruptedException {
+        String[] args = new String[] {
+            "--app.generator.accounts=100",
+            "--app.generator.messages=" + MESSAGES,
+            "--app.sql.debug-headers=true",
+            "--app.limiter.enabled=false"
+        };
+        String[] all = new String[args.length + extraArgs.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(extraArgs, 0, all, args.length, extraArgs.length);
+        app = SpringApplication.run(SocialMediaApp.class, all);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A deleted message is gone from every read route at once and can no longer be edited, while its row stays in
+     * the table until the purger removes it.
+     */
+    @Test
+    public void tombstonedMessagesAreHiddenUntilPurged() throws IOException, InterruptedException {
+        start("--app.tombstones.purge-enabled=false");
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        MeterRegistry registry = app.getBean(MeterRegistry.class);
+        Message[] authored = objectMapper.readValue(send("GET", "accounts/1/messages").body(), Message[].class);
+        int oldest = authored[0].getMessageId();
+        int newest = objectMapper.readValue(send("GET", "messages/recent?limit=1").body(), Message[].class)[0].getMessageId();
+
+        HttpResponse<String> deleted = send("DELETE", "messages/" + oldest);
+        Assertions.assertEquals("1", deleted.body());
+        Assertions.assertEquals("2", deleted.headers().firstValue("X-SQL-Statements").orElse("missing"));
+        Assertions.assertEquals("1", send("DELETE", "messages/" + newest).body());
+        Assertions.assertEquals("", send("DELETE", "messages/" + oldest).body());
+
+        for (int id : new int[] {oldest, newest}) {
+            Assertions.assertEquals("", send("GET", "messages/" + id).body());
+            Assertions.assertEquals("[null]", send("GET", "messages?ids=" + id).body());
+            Assertions.assertEquals(400, send("PATCH", "messages/" + id, "{\"messageText\":\"revived\"}").statusCode());
+            Assertions.assertEquals(1, count(jdbcTemplate, "select count(*) from message where messageId = " + id));
+        }
+        Assertions.assertEquals(authored.length - 1, objectMapper.readValue(send("GET", "accounts/1/messages").body(), Message[].class).length);
+        Assertions.assertFalse(send("GET", "feed?authors=1&limit=200").body().contains("\"messageId\":" + oldest + ","));
+        Assertions.assertNotEquals(newest, objectMapper.readValue(send("GET", "messages/recent?limit=1").body(), Message[].class)[0].getMessageId());
+        Assertions.assertEquals(MESSAGES - 2, objectMapper.readValue(send("GET", "messages").body(), Message[].class).length);
+        Assertions.assertEquals(MESSAGES - 2, objectMapper.readValue(send("GET", "messages?fields=messageId").body(), Object[].class).length);
+        Assertions.assertEquals(2.0, registry.get("tombstones.backlog").gauge().value());
+
+        Assertions.assertEquals(2, app.getBean(TombstonePurger.class).purgeOnce());
+        Assertions.assertEquals(0.0, registry.get("tombstones.backlog").gauge().value());
+        Assertions.assertEquals(2.0, registry.get("tombstones.purged").counter().count());
+        Assertions.assertEquals(MESSAGES - 2, count(jdbcTemplate, "select count(*) from message"));
+        Assertions.assertEquals(0, count(jdbcTemplate, "select count(*) from message_tombstone"));
+        Assertions.assertEquals("", send("GET", "messages/" + oldest).body());
+        Assertions.assertEquals(0, app.getBean(TombstonePurger.class).purgeOnce());
+    }
+
+    /**
+     * A row removed around the purger can leave its tombstone behind; a new message that gets the same id (here after
+     * the sequence was rewound) takes the id over instead of being hidden and then purged with the old tombstone.
+     */
+    @Test
+    public void tombstoneNeverPurgesANewerRowWithTheSameId() throws IOException, InterruptedException {
+        start("--app.tombstones.purge-enabled=false");
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        String json = "{\"postedBy\":1,\"messageText\":\"%s\",\"timePostedEpoch\":1669947800}";
+        int id = objectMapper.readValue(send("POST", "messages", String.format(json, "old")).body(), Message.class).getMessageId();
+        Assertions.assertEquals("1", send("DELETE", "messages/" + id).body());
+        jdbcTemplate.update("delete from message where messageId = ?", id);
+        jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + id);
+
+        Message reused = objectMapper.readValue(send("POST", "messages", String.format(json, "new")).body(), Message.class);
+        Assertions.assertEquals(id, reused.getMessageId());
+        Assertions.assertEquals("new", objectMapper.readValue(send("GET", "messages/" + id).body(), Message.class).getMessageText());
+        Assertions.assertEquals(0, count(jdbcTemplate, "select count(*) from message_tombstone"));
+
+        Assertions.assertEquals(0, app.getBean(TombstonePurger.class).purgeOnce());
+        Assertions.assertEquals(1, count(jdbcTemplate, "select count(*) from message where messageId = " + id));
+    }
+
+    /**
+     * The background purger holds off while the app is busy (here: never quiet) and works the backlog down in
+     * batches once the tuning lets it; the delete latency and purge rate are reported.
+     */
+    @Test
+    public void backgroundPurgeWaitsForQuietAndDrainsInBatches() throws IOException, InterruptedException {
+        start("--app.tombstones.purge-interval-millis=50", "--app.tombstones.batch-size=100",
+                "--app.tombstones.batch-pause-millis=0", "--app.tombstones.quiet-max-in-flight=-1");
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        MeterRegistry registry = app.getBean(MeterRegistry.class);
+        TombstoneProperties properties = app.getBean(TombstoneProperties.class);
+        int deletes = 1000;
+
+        long start = System.nanoTime();
+        for (int id = 1; id <= deletes; id++) {
+            Assertions.assertEquals("1", send("DELETE", "messages/" + id).body());
+        }
+        long deleteNanos = System.nanoTime() - start;
+        Thread.sleep(300);
+        Assertions.assertEquals(deletes, (int) registry.get("tombstones.backlog").gauge().value());
+        Assertions.assertTrue(registry.get("tombstones.purge.deferred").counter().count() > 0);
+        Assertions.assertEquals(MESSAGES, count(jdbcTemplate, "select count(*) from message"));
+
+        properties.setQuietMaxInFlight(2);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (registry.get("tombstones.backlog").gauge().value() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(0.0, registry.get("tombstones.backlog").gauge().value());
+        Assertions.assertEquals(MESSAGES - deletes, count(jdbcTemplate, "select count(*) from message"));
+        Assertions.assertEquals(0, count(jdbcTemplate, "select count(*) from message_tombstone"));
+        double batches = registry.get("tombstones.purge.batch").timer().count();
+        double purgeMillis = registry.get("tombstones.purge.batch").timer().totalTime(TimeUnit.MILLISECONDS);
+        Assertions.assertEquals(deletes / 100, (int) batches);
+        System.out.printf("%d soft deletes: %d us each over HTTP; purged in %d batches, %.1f ms in total (%.0f messages/s)%n",
+                deletes, deleteNanos / deletes / 1000, (int) batches, purgeMillis, deletes / (purgeMillis / 1000));
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        return send(method, path, null);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class SqlStatementCountTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.sql.debug-headers=true"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Every route should run exactly the number of SQL statements it is known to need, so an accidental N+1 or an
+     * extra lookup shows up here as a failing count.
+     */
+    @Test
+    public void statementCountsPerRoute() throws IOException, InterruptedException {
+        assertStatements(1, send("GET", "messages", null));
+        // message and its ETag version in one statement
+        assertStatements(1, send("GET", "messages/9999", null));
+        assertStatements(1, send("GET", "messages/100", null));
+        // author index hit: one batch primary key lookup; unknown author: just the account check
+        assertStatements(1, send("GET", "accounts/9999/messages", null));
+        assertStatements(1, send("GET", "accounts/5050/messages", null));
+        assertStatements(3, send("POST", "messages", "{\"postedBy\":9999,\"messageText\":\"hi\",\"timePostedEpoch\":1669947792}"));
+        assertStatements(2, send("PATCH", "messages/9999", "{\"messageText\":\"changed\"}"));
+        assertStatements(2, send("DELETE", "messages/9999", null));
+        // sequence value, then the insert with it bound; no username lookup before it
+        assertStatements(2, send("POST", "register", "{\"username\":\"counted\",\"password\":\"password\"}"));
+        // first login migrates the plaintext seed password, the second one is a single lookup
+        assertStatements(2, send("POST", "login", "{\"username\":\"testuser1\",\"password\":\"password\"}"));
+        assertStatements(1, send("POST", "login", "{\"username\":\"testuser1\",\"password\":\"password\"}"));
+    }
+
+    private void assertStatements(int expected, HttpResponse<String> response) {
+        String actual = response.headers().firstValue("X-SQL-Statements").orElse("missing");
+        Assertions.assertEquals(String.valueOf(expected), actual, response.request().method() + " " + response.request().uri());
+        Assertions.assertTrue(response.headers().firstValue("X-SQL-Time-Micros").isPresent());
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
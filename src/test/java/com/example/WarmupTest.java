@@ -0,0 +1,115 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.AccountRepository;
+import com.example.tombstone.MessageTombstones;
+import com.example.warmup.WarmupResult;
+import com.example.warmup.WarmupRunner;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class WarmupTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+            "--app.warmup.enabled=true",
+            "--app.warmup.max-seconds=8",
+            "--app.warmup.batch-rounds=20",
+            "--app.warmup.stable-batches=2",
+            "--app.password.hash-target-millis=0",
+            "--app.password.min-iterations=1000"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The warm-up runs while the app is not ready yet, reports what it did, and leaves no trace: no scratch
+     * accounts, messages or tombstones. Ids are not rewound, the first real post gets an id after the warm-up's.
+     */
+    @Test
+    public void warmupRunsBeforeReadinessAndCleansUp() throws IOException, InterruptedException {
+        WarmupResult result = app.getBean(WarmupRunner.class).getLastResult();
+        Assertions.assertNotNull(result);
+        Assertions.assertTrue(result.getRounds() > 0);
+        Assertions.assertNotEquals(ReadinessState.ACCEPTING_TRAFFIC, result.getReadinessDuringWarmup());
+        System.out.printf("Warm-up: %d rounds in %d ms, median %d -> %d us, p99 %d -> %d us%n", result.getRounds(),
+                result.getMillis(), result.getFirstMedianNanos() / 1000, result.getFinalMedianNanos() / 1000,
+                result.getFirstP99Nanos() / 1000, result.getFinalP99Nanos() / 1000);
+
+        HttpResponse<String> readiness = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/health/readiness")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, readiness.statusCode());
+
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Assertions.assertEquals(4, app.getBean(AccountRepository.class).count());
+        Assertions.assertEquals(3, count(jdbcTemplate, "select count(*) from message"));
+        Assertions.assertEquals(0, count(jdbcTemplate, "select count(*) from message_tombstone"));
+        Assertions.assertEquals(0, app.getBean(MessageTombstones.class).size());
+        Message first = post(9999, "first");
+        Assertions.assertTrue(first.getMessageId() > result.getRounds(), "id " + first.getMessageId());
+    }
+
+    /**
+     * A real account that happens to have a "warmup-" username, and its messages, survive another warm-up run.
+     */
+    @Test
+    public void warmupOnlyRemovesWhatItCreated() throws Exception {
+        HttpResponse<String> registered = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"warmup-alice\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, registered.statusCode());
+        int alice = new ObjectMapper().readTree(registered.body()).path("accountId").asInt();
+        Message kept = post(alice, "not scratch data");
+
+        app.getBean(WarmupRunner.class).run(null);
+
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Assertions.assertEquals(5, app.getBean(AccountRepository.class).count());
+        Assertions.assertEquals(4, count(jdbcTemplate, "select count(*) from message"));
+        HttpResponse<String> byAlice = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + alice + "/messages")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(kept, new ObjectMapper().readValue(byAlice.body(), Message[].class)[0]);
+    }
+
+    private Message post(int postedBy, String text) throws IOException, InterruptedException {
+        HttpResponse<String> posted = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":" + postedBy + ",\"messageText\":\"" + text
+                        + "\",\"timePostedEpoch\":1669947800}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, posted.statusCode());
+        return new ObjectMapper().readValue(posted.body(), Message.class);
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}